@@ -16,21 +16,10 @@
 
 package com.woodblockwithoutco.remotecontroller.impl;
 
-import java.util.ArrayList;
-import java.util.List;
-
-import com.woodblockwithoutco.remotecontroller.OnArtworkChangeListener;
-import com.woodblockwithoutco.remotecontroller.OnMetadataChangeListener;
-import com.woodblockwithoutco.remotecontroller.OnPlaybackStateChangeListener;
-import com.woodblockwithoutco.remotecontroller.OnRemoteControlFeaturesChangeListener;
 import com.woodblockwithoutco.remotecontroller.PlayState;
-import com.woodblockwithoutco.remotecontroller.RemoteControlFeature;
-
 
 import android.app.PendingIntent;
-import android.graphics.Bitmap;
 import android.media.MediaMetadataRetriever;
-import android.media.RemoteControlClient;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Message;
@@ -45,34 +34,21 @@ class MetadataUpdaterCallbackV14 implements Handler.Callback {
 	 * Information about current client.
 	 */
 	private int mGenerationId;
-	private List<RemoteControlFeature> mFeatureList = null;
-	private OnArtworkChangeListener mArtworkChangeListener;
-	private OnMetadataChangeListener mMetadataChangeListener;
-	private OnPlaybackStateChangeListener mPlaybackStateChangeListener;
-	private OnRemoteControlFeaturesChangeListener mRemoteControlFeaturesChangeListener;
+	private ListenerRegistry mListenerRegistry;
+	private ConflatingQueue mPendingEvents;
 	private RemoteControlDisplayImplV14 mProxyImpl;
+	private ArtworkChangeDetector mArtworkChangeDetector;
+	private ArtworkCache mArtworkCache;
+	private String mAlbumKey;
 
-	public MetadataUpdaterCallbackV14(RemoteControlDisplayImplV14 proxy) {
-		mFeatureList = new ArrayList<RemoteControlFeature>();
+	public MetadataUpdaterCallbackV14(RemoteControlDisplayImplV14 proxy, ArtworkChangeDetector artworkChangeDetector, ArtworkCache artworkCache, ListenerRegistry listenerRegistry, ConflatingQueue pendingEvents) {
 		mProxyImpl = proxy;
+		mArtworkChangeDetector = artworkChangeDetector;
+		mArtworkCache = artworkCache;
+		mListenerRegistry = listenerRegistry;
+		mPendingEvents = pendingEvents;
 	}
 	
-	public void setArtworkChangeListener(OnArtworkChangeListener l) {
-		mArtworkChangeListener = l;
-	}
-	
-	public void setMetadataChangeListener(OnMetadataChangeListener l) {
-		mMetadataChangeListener = l;
-	}
-	
-	public void setPlaybackStateChangeListener(OnPlaybackStateChangeListener l) {
-		mPlaybackStateChangeListener = l;
-	}
-	
-	public void setRemoteControlFeaturesChangeListener(OnRemoteControlFeaturesChangeListener l) {
-		mRemoteControlFeaturesChangeListener = l;
-	}
-
 	/**
 	 * @param bundle
 	 * @param key
@@ -90,83 +66,79 @@ class MetadataUpdaterCallbackV14 implements Handler.Callback {
 		return bundle.getLong(String.valueOf(MediaMetadataRetriever.METADATA_KEY_DURATION));
 	}
 
+	/**
+	 * Serves cached artwork as soon as album changes, player's own artwork
+	 * which arrives later is then suppressed if it's the same.
+	 */
+	private void updateAlbum(String albumKey) {
+		if (albumKey == null || albumKey.equals(mAlbumKey)) {
+			mAlbumKey = albumKey;
+			return;
+		}
+		mAlbumKey = albumKey;
+		Artwork cached = mArtworkCache.get(albumKey);
+		if (cached != null) {
+			mArtworkChangeDetector.markDelivered(mGenerationId, cached);
+			mListenerRegistry.dispatchArtworkChanged(cached.handle);
+			cached.release();
+		}
+	}
+
 	@Override
 	public boolean handleMessage(Message msg) {
+		ConflatingQueue.Event event;
 		switch (msg.what) {
 		case RemoteControlDisplayV14.MSG_SET_GENERATION_ID:
 			mGenerationId = msg.arg1;
 			mProxyImpl.setCurrentClientPendingIntent((PendingIntent) msg.obj);
+			mAlbumKey = null;
+			mListenerRegistry.dispatchClientChanged((PendingIntent) msg.obj);
 			return true;
 		case RemoteControlDisplayV14.MSG_SET_METADATA:
-			if (mGenerationId == msg.arg1) {
-				if (mMetadataChangeListener != null) {
-					Bundle metadata = (Bundle) msg.obj;
-					mMetadataChangeListener.onMetadataChanged(getMetadataString(metadata, MediaMetadataRetriever.METADATA_KEY_ARTIST), 
-							getMetadataString(metadata, MediaMetadataRetriever.METADATA_KEY_TITLE), 
-							getMetadataString(metadata, MediaMetadataRetriever.METADATA_KEY_ALBUM), 
-							getMetadataString(metadata, MediaMetadataRetriever.METADATA_KEY_ALBUMARTIST), 
-							getDuration(metadata));
+			event = mPendingEvents.take(msg.what, mGenerationId);
+			if (event != null) {
+				Bundle metadata = (Bundle) event.obj;
+				boolean notifyMetadata = mListenerRegistry.hasMetadataListeners();
+				boolean notifyArtwork = mListenerRegistry.hasArtworkListeners();
+				if (notifyMetadata || notifyArtwork) {
+					String title = getMetadataString(metadata, MediaMetadataRetriever.METADATA_KEY_TITLE);
+					String album = getMetadataString(metadata, MediaMetadataRetriever.METADATA_KEY_ALBUM);
+					long duration = getDuration(metadata);
+					String artist = getMetadataString(metadata, MediaMetadataRetriever.METADATA_KEY_ARTIST);
+					String albumArtist = getMetadataString(metadata, MediaMetadataRetriever.METADATA_KEY_ALBUMARTIST);
+					if (notifyMetadata) {
+						mListenerRegistry.dispatchMetadataChanged(artist, title, album, albumArtist, duration);
+					}
+					if (notifyArtwork) {
+						updateAlbum(ArtworkCache.getAlbumKey(artist, album, albumArtist));
+					}
 				}
 			}
 			return true;
 		case RemoteControlDisplayV14.MSG_SET_TRANSPORT_CONTROLS:
-			if (mGenerationId == msg.arg1) {
-				if (mRemoteControlFeaturesChangeListener != null) {
-					int flags = msg.arg2;
-					mFeatureList.clear();
-					if ((flags | RemoteControlClient.FLAG_KEY_MEDIA_FAST_FORWARD) == flags) mFeatureList.add(RemoteControlFeature.USES_FAST_FORWARD);
-					if ((flags | RemoteControlClient.FLAG_KEY_MEDIA_NEXT) == flags) mFeatureList.add(RemoteControlFeature.USES_NEXT);
-					if ((flags | RemoteControlClient.FLAG_KEY_MEDIA_PAUSE) == flags) mFeatureList.add(RemoteControlFeature.USES_PAUSE);
-					if ((flags | RemoteControlClient.FLAG_KEY_MEDIA_PLAY) == flags) mFeatureList.add(RemoteControlFeature.USES_PLAY);
-					if ((flags | RemoteControlClient.FLAG_KEY_MEDIA_PLAY_PAUSE) == flags) mFeatureList.add(RemoteControlFeature.USES_PLAY_PAUSE);
-					if ((flags | RemoteControlClient.FLAG_KEY_MEDIA_PREVIOUS) == flags) mFeatureList.add(RemoteControlFeature.USES_PREVIOUS);
-					if ((flags | RemoteControlClient.FLAG_KEY_MEDIA_REWIND) == flags) mFeatureList.add(RemoteControlFeature.USES_REWIND);
-					if ((flags | RemoteControlClient.FLAG_KEY_MEDIA_STOP) == flags) mFeatureList.add(RemoteControlFeature.USES_STOP);
-					mRemoteControlFeaturesChangeListener.onFeaturesChanged(mFeatureList);
-				}
+			event = mPendingEvents.take(msg.what, mGenerationId);
+			if (event != null) {
+				mListenerRegistry.dispatchFeaturesChanged((RemoteControlFeatureList) event.obj);
 			}
 			return true;
 		case RemoteControlDisplayV14.MSG_SET_ARTWORK:
-			if (mGenerationId == msg.arg1) {
-				if (mArtworkChangeListener != null) {
-
-					Bitmap artwork = (Bitmap) msg.obj;
-					mArtworkChangeListener.onArtworkChanged(artwork);
+			event = mPendingEvents.take(msg.what, mGenerationId);
+			if (event != null) {
+				Artwork artwork = (Artwork) event.obj;
+				mArtworkCache.put(mAlbumKey, artwork);
+				if (mArtworkChangeDetector.isChanged(mGenerationId, artwork)) {
+					mListenerRegistry.dispatchArtworkChanged(artwork.handle);
 				}
+				// reference taken on artwork worker
+				artwork.release();
 			}
 			return true;
 		case RemoteControlDisplayV14.MSG_UPDATE_STATE:
-			if (mGenerationId == msg.arg1) {
-				if (mPlaybackStateChangeListener != null) {
-					switch (msg.arg2) {
-					case RemoteControlClient.PLAYSTATE_BUFFERING:
-						mPlaybackStateChangeListener.onPlaybackStateChanged(PlayState.BUFFERING);
-						break;
-					case RemoteControlClient.PLAYSTATE_ERROR:
-						mPlaybackStateChangeListener.onPlaybackStateChanged(PlayState.ERROR);
-						break;
-					case RemoteControlClient.PLAYSTATE_FAST_FORWARDING:
-						mPlaybackStateChangeListener.onPlaybackStateChanged(PlayState.FAST_FORWARDING);
-						break;
-					case RemoteControlClient.PLAYSTATE_PAUSED:
-						mPlaybackStateChangeListener.onPlaybackStateChanged(PlayState.PAUSED);
-						break;
-					case RemoteControlClient.PLAYSTATE_PLAYING:
-						mPlaybackStateChangeListener.onPlaybackStateChanged(PlayState.PLAYING);
-						break;
-					case RemoteControlClient.PLAYSTATE_REWINDING:
-						mPlaybackStateChangeListener.onPlaybackStateChanged(PlayState.REWINDING);
-						break;
-					case RemoteControlClient.PLAYSTATE_SKIPPING_BACKWARDS:
-						mPlaybackStateChangeListener.onPlaybackStateChanged(PlayState.SKIPPING_BACKWARDS);
-						break;
-					case RemoteControlClient.PLAYSTATE_SKIPPING_FORWARDS:
-						mPlaybackStateChangeListener.onPlaybackStateChanged(PlayState.SKIPPING_FORWARDS);
-						break;
-					case RemoteControlClient.PLAYSTATE_STOPPED:
-						mPlaybackStateChangeListener.onPlaybackStateChanged(PlayState.STOPPED);
-						break;
-					}
+			event = mPendingEvents.take(msg.what, mGenerationId);
+			if (event != null) {
+				PlayState state = PlayStates.fromClientState(event.arg);
+				if (state != null) {
+					mListenerRegistry.dispatchPlaybackStateChanged(state, null);
 				}
 			}
 			return true;
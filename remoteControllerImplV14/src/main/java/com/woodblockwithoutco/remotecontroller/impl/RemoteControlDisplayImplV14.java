@@ -19,93 +19,126 @@ import android.app.PendingIntent;
 import android.app.PendingIntent.CanceledException;
 import android.content.Context;
 import android.content.Intent;
+import android.graphics.Bitmap;
 import android.media.AudioManager;
 import android.media.IRemoteControlDisplay;
 import android.os.Handler;
+import android.os.Looper;
 import android.os.SystemClock;
 import android.util.Log;
-import android.view.KeyEvent;
 
+import com.woodblockwithoutco.remotecontroller.CommandFuture;
 import com.woodblockwithoutco.remotecontroller.MediaCommand;
 import com.woodblockwithoutco.remotecontroller.OnArtworkChangeListener;
+import com.woodblockwithoutco.remotecontroller.OnArtworkHandleChangeListener;
 import com.woodblockwithoutco.remotecontroller.OnMetadataChangeListener;
 import com.woodblockwithoutco.remotecontroller.OnPlaybackStateChangeListener;
 import com.woodblockwithoutco.remotecontroller.OnRemoteControlFeaturesChangeListener;
+import com.woodblockwithoutco.remotecontroller.OnTrackChangeListener;
+import com.woodblockwithoutco.remotecontroller.PlaybackSnapshot;
+import com.woodblockwithoutco.remotecontroller.RegistrationFuture;
 import com.woodblockwithoutco.remotecontroller.RemoteControlDisplay;
+import com.woodblockwithoutco.remotecontroller.RemoteControllerStatistics;
 
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
 
 public class RemoteControlDisplayImplV14 implements RemoteControlDisplay {
 
 	private static final String TAG = "RemoteControlDisplayImplV14";
 	private Context mContext;
-	private PendingIntent mClientIntent;
+	private volatile PendingIntent mClientIntent;
+	private volatile ClientIdentity mClientIdentity;
 	private AudioManager mAudioManager;
 	private RemoteControlDisplayV14 mRcd;
 	private Handler mHandler;
 	private MetadataUpdaterCallbackV14 mCallback;
+	private RemoteControllerStatistics mStatistics;
+	private ArtworkChangeDetector mArtworkChangeDetector;
+	private ArtworkCache mArtworkCache;
+	private ArtworkProcessor mArtworkProcessor;
+	private ListenerRegistry mListenerRegistry;
+	private ConflatingQueue mPendingEvents;
 	private boolean mIsRegistered;
-	private Method mRegisterRcdMethod;
-	private Method mUnregisterRcdMethod;
+
+	private static final HiddenApi.MethodRef REGISTER_RCD_METHOD = HiddenApi.method(AudioManager.class, "registerRemoteControlDisplay", IRemoteControlDisplay.class);
+	private static final HiddenApi.MethodRef UNREGISTER_RCD_METHOD = HiddenApi.method(AudioManager.class, "unregisterRemoteControlDisplay", IRemoteControlDisplay.class);
 
 	public RemoteControlDisplayImplV14(Context context) {
-		initHiddenMethods();
-		
+		this(context, false);
+	}
+
+	/**
+	 * @param processInBackground
+	 *            If true, client events are processed on a library owned
+	 *            thread and listeners without executor are called on main
+	 *            thread.
+	 */
+	public RemoteControlDisplayImplV14(Context context, boolean processInBackground) {
+		this(context, processInBackground, Looper.myLooper());
+	}
+
+	/**
+	 * @param looper
+	 *            Looper of thread on which client events are processed if
+	 *            they aren't processed in background.
+	 */
+	public RemoteControlDisplayImplV14(Context context, boolean processInBackground, Looper looper) {
 		mContext = context;
 		mAudioManager = (AudioManager) mContext.getSystemService(Context.AUDIO_SERVICE);
-		mCallback = new MetadataUpdaterCallbackV14(this);
-		mHandler = new Handler(mCallback);
-		mRcd = new RemoteControlDisplayV14(mHandler);
-	}
-	
-	private void initHiddenMethods() {
-		Class<AudioManager> audioManagerClass = AudioManager.class;
-		try {
-			mRegisterRcdMethod = audioManagerClass.getDeclaredMethod("registerRemoteControlDisplay", IRemoteControlDisplay.class);
-			mUnregisterRcdMethod = audioManagerClass.getDeclaredMethod("unregisterRemoteControlDisplay", IRemoteControlDisplay.class);
-		} catch (NoSuchMethodException e) {
-			throw new RuntimeException(e);
-		}
+		mStatistics = new RemoteControllerStatistics();
+		mArtworkChangeDetector = new ArtworkChangeDetector(mStatistics);
+		mArtworkCache = new ArtworkCache(mStatistics);
+		mArtworkProcessor = new ArtworkProcessor();
+		mPendingEvents = new ConflatingQueue(RemoteControlDisplayV14.FIRST_EVENT, RemoteControlDisplayV14.EVENT_COUNT, mStatistics);
+		mListenerRegistry = processInBackground ? new ListenerRegistry(MainThreadExecutor.getInstance()) : new ListenerRegistry();
+		mCallback = new MetadataUpdaterCallbackV14(this, mArtworkChangeDetector, mArtworkCache, mListenerRegistry, mPendingEvents);
+		mHandler = processInBackground ? new Handler(PipelineThread.getLooper(), mCallback) : new Handler(looper, mCallback);
+		mListenerRegistry.setDispatchLooper(mHandler.getLooper());
+		mRcd = new RemoteControlDisplayV14(mHandler, mArtworkProcessor, mListenerRegistry.getEventInterest(), mPendingEvents);
 	}
 	
-	private void registerRemoteControlDisplay(IRemoteControlDisplay rcd) {
-		try {
-			mRegisterRcdMethod.invoke(mAudioManager, rcd);
-		} catch (IllegalArgumentException e) {
-			throw new RuntimeException(e);
-		} catch (IllegalAccessException e) {
-			throw new RuntimeException(e);
-		} catch (InvocationTargetException e) {
-			throw new RuntimeException(e);
-		}
+	private boolean registerRemoteControlDisplay(IRemoteControlDisplay rcd) {
+		return REGISTER_RCD_METHOD.invoke(mAudioManager, rcd);
 	}
 	
 	private void unregisterRemoteControlDisplay(IRemoteControlDisplay rcd) {
-		try {
-			mUnregisterRcdMethod.invoke(mAudioManager, rcd);
-		} catch (IllegalArgumentException e) {
-			throw new RuntimeException(e);
-		} catch (IllegalAccessException e) {
-			throw new RuntimeException(e);
-		} catch (InvocationTargetException e) {
-			throw new RuntimeException(e);
-		}
+		UNREGISTER_RCD_METHOD.invoke(mAudioManager, rcd);
 	}
 
 	@Override
 	public boolean registerRemoteControls() {
+		return registerRemoteControls(ArtworkProcessor.ORIGINAL_SIZE, ArtworkProcessor.ORIGINAL_SIZE);
+	}
+
+	@Override
+	public boolean registerRemoteControls(int width, int height) {
 		if(mRcd == null) {
-			mRcd = new RemoteControlDisplayV14(mHandler);
+			mRcd = new RemoteControlDisplayV14(mHandler, mArtworkProcessor, mListenerRegistry.getEventInterest(), mPendingEvents);
 		}
-		mIsRegistered = true;
-		registerRemoteControlDisplay(mRcd);
-		return true;
+		// ICS always sends full size artwork, so it is scaled by us
+		mArtworkProcessor.setMaxSize(width, height);
+		mRcd.setArtworkEnabled(true);
+		mArtworkChangeDetector.reset();
+		mIsRegistered = registerRemoteControlDisplay(mRcd);
+		return mIsRegistered;
 	}
 
 	@Override
-	public boolean registerRemoteControls(int width, int height) {
-		return registerRemoteControls();
+	public boolean registerRemoteControlsWithoutArtwork() {
+		if(mRcd == null) {
+			mRcd = new RemoteControlDisplayV14(mHandler, mArtworkProcessor, mListenerRegistry.getEventInterest(), mPendingEvents);
+		}
+		// ICS has no way to tell the system we don't need artwork
+		mRcd.setArtworkEnabled(false);
+		mArtworkChangeDetector.reset();
+		mIsRegistered = registerRemoteControlDisplay(mRcd);
+		return mIsRegistered;
+	}
+
+	@Override
+	public RegistrationFuture getRegistrationFuture() {
+		// registration is applied synchronously
+		return new RegistrationFuture(mIsRegistered);
 	}
 
 	@Override
@@ -123,8 +156,9 @@ public class RemoteControlDisplayImplV14 implements RemoteControlDisplay {
 
 	@Override
 	public Intent getCurrentClientIntent() {
-		if (mClientIntent == null) return null;
-		return mContext.getPackageManager().getLaunchIntentForPackage(mClientIntent.getTargetPackage());
+		ClientIdentity identity = mClientIdentity;
+		if (identity == null) return null;
+		return identity.getLaunchIntent();
 	}
 
 	@Override
@@ -137,46 +171,19 @@ public class RemoteControlDisplayImplV14 implements RemoteControlDisplay {
 	@Override
 	public boolean sendMediaCommand(MediaCommand command) {
 		if (mClientIntent != null && mContext != null) {
-			switch (command) {
-			case REWIND:
-				return sendButton(KeyEvent.KEYCODE_MEDIA_REWIND);
-			case PREVIOUS:
-				return sendButton(KeyEvent.KEYCODE_MEDIA_PREVIOUS);
-			case PLAY:
-				return sendButton(KeyEvent.KEYCODE_MEDIA_PLAY);
-			case PAUSE:
-				return sendButton(KeyEvent.KEYCODE_MEDIA_PAUSE);
-			case PLAY_PAUSE:
-				return sendButton(KeyEvent.KEYCODE_MEDIA_PLAY_PAUSE);
-			case STOP:
-				return sendButton(KeyEvent.KEYCODE_MEDIA_STOP);
-			case NEXT:
-				return sendButton(KeyEvent.KEYCODE_MEDIA_NEXT);
-			case FAST_FORWARD:
-				return sendButton(KeyEvent.KEYCODE_MEDIA_FAST_FORWARD);
-			}
+			return sendButton(command);
 		}
 		// will silently fail with false return if client is missing
 		return false;
 	}
 
-	private boolean sendButton(int keyCode) {
-		KeyEvent keyEvent = new KeyEvent(KeyEvent.ACTION_DOWN, keyCode);
-		Intent intent = new Intent(Intent.ACTION_MEDIA_BUTTON);
-		intent.putExtra(Intent.EXTRA_KEY_EVENT, keyEvent);
+	private boolean sendButton(MediaCommand command) {
 		try {
 			if (mClientIntent == null) return false;
-			mClientIntent.send(mContext, 0, intent);
-		} catch (CanceledException e) {
-			// will silently fail with false return
-			return false;
-		}
-		keyEvent = new KeyEvent(KeyEvent.ACTION_UP, keyCode);
-		intent = new Intent(Intent.ACTION_MEDIA_BUTTON);
-		intent.putExtra(Intent.EXTRA_KEY_EVENT, keyEvent);
-		try {
+			long now = SystemClock.uptimeMillis();
+			mClientIntent.send(mContext, 0, MediaCommandEncoder.createDownIntent(command, now));
 			if (mClientIntent == null) return false;
-			mClientIntent.send(mContext, 0, intent);
+			mClientIntent.send(mContext, 0, MediaCommandEncoder.createUpIntent(command, now));
 		} catch (CanceledException e) {
 			// will silently fail with false return
 			return false;
@@ -184,93 +191,143 @@ public class RemoteControlDisplayImplV14 implements RemoteControlDisplay {
 		return true;
 	}
 
+	/**
+	 * Called on client change, identity of client is resolved only here.
+	 */
 	protected void setCurrentClientPendingIntent(PendingIntent clientIntent) {
+		ClientIdentity identity = mContext != null ? ClientIdentity.resolve(mContext, clientIntent) : null;
+		mClientIdentity = identity;
 		mClientIntent = clientIntent;
+		if (identity != null) {
+			MediaButtonResolver.getInstance(mContext).setActivePackage(identity.packageName);
+		}
 	}
 
 	@Override
 	public void sendBroadcastMediaCommand(MediaCommand command) {
-		switch (command) {
-		case REWIND:
-			sendBroadcastButton(KeyEvent.KEYCODE_MEDIA_REWIND);
-			break;
-		case PREVIOUS:
-			sendBroadcastButton(KeyEvent.KEYCODE_MEDIA_PREVIOUS);
-			break;
-		case PLAY:
-			sendBroadcastButton(KeyEvent.KEYCODE_MEDIA_PLAY);
-			break;
-		case PAUSE:
-			sendBroadcastButton(KeyEvent.KEYCODE_MEDIA_PAUSE);
-			break;
-		case PLAY_PAUSE:
-			sendBroadcastButton(KeyEvent.KEYCODE_MEDIA_PLAY_PAUSE);
-			break;
-		case STOP:
-			sendBroadcastButton(KeyEvent.KEYCODE_MEDIA_STOP);
-			break;
-		case NEXT:
-			sendBroadcastButton(KeyEvent.KEYCODE_MEDIA_NEXT);
-			break;
-		case FAST_FORWARD:
-			sendBroadcastButton(KeyEvent.KEYCODE_MEDIA_FAST_FORWARD);
-			break;
+		if (mContext != null && !MediaButtonResolver.getInstance(mContext).send(command)) {
+			long now = SystemClock.uptimeMillis();
+			mContext.sendOrderedBroadcast(MediaCommandEncoder.createDownIntent(command, now), null);
+			mContext.sendOrderedBroadcast(MediaCommandEncoder.createUpIntent(command, now), null);
 		}
 	}
 
-	private void sendBroadcastButton(int keyCode) {
-		if (mContext != null) {
-			long eventtime = SystemClock.uptimeMillis();
-			Intent keyIntent = new Intent(Intent.ACTION_MEDIA_BUTTON, null);
-			KeyEvent keyEvent = new KeyEvent(eventtime, eventtime, KeyEvent.ACTION_DOWN, keyCode, 0);
-			keyIntent.putExtra(Intent.EXTRA_KEY_EVENT, keyEvent);
-			mContext.sendOrderedBroadcast(keyIntent, null);
-			keyEvent = KeyEvent.changeAction(keyEvent, KeyEvent.ACTION_UP);
-			keyIntent.putExtra(Intent.EXTRA_KEY_EVENT, keyEvent);
-			mContext.sendOrderedBroadcast(keyIntent, null);
-		}
-	}
 	
-	private void sendBroadcastButton(int keyCode, PendingIntent pintent) {
-		if(mContext != null) {
-			try {
-				long eventtime = SystemClock.uptimeMillis();
-				Intent keyIntent = new Intent(Intent.ACTION_MEDIA_BUTTON, null);
-				KeyEvent keyEvent = new KeyEvent(eventtime, eventtime, KeyEvent.ACTION_DOWN, keyCode, 0);
-				keyIntent.putExtra(Intent.EXTRA_KEY_EVENT, keyEvent);
-				pintent.send(mContext, 0, keyIntent);
-				keyEvent = KeyEvent.changeAction(keyEvent, KeyEvent.ACTION_UP);
-				keyIntent.putExtra(Intent.EXTRA_KEY_EVENT, keyEvent);
-				pintent.send(mContext, 0, keyIntent);
-			} catch (CanceledException e) {
-				Log.e(TAG, "Sending broadcast to specific player has been cancelled");
-			}
-		}
-	}
-
 	@Override
 	public long getPosition() {
-		return -1;
+		// ICS clients don't report playback position
+		return PositionClock.POSITION_UNKNOWN;
 	}
 
 	@Override
 	public void setArtworkChangeListener(OnArtworkChangeListener l) {
-		mCallback.setArtworkChangeListener(l);
+		mListenerRegistry.setArtworkChangeListener(l);
+	}
+
+	@Override
+	public void setArtworkHandleChangeListener(OnArtworkHandleChangeListener l) {
+		mListenerRegistry.setArtworkHandleChangeListener(l);
 	}
 
 	@Override
 	public void setMetadataChangeListener(OnMetadataChangeListener l) {
-		mCallback.setMetadataChangeListener(l);
+		mListenerRegistry.setMetadataChangeListener(l);
 	}
 
 	@Override
 	public void setPlaybackStateChangeListener(OnPlaybackStateChangeListener l) {
-		mCallback.setPlaybackStateChangeListener(l);
+		mListenerRegistry.setPlaybackStateChangeListener(l);
 	}
 
 	@Override
 	public void setRemoteControlFeaturesChangeListener(OnRemoteControlFeaturesChangeListener l) {
-		mCallback.setRemoteControlFeaturesChangeListener(l);
+		mListenerRegistry.setRemoteControlFeaturesChangeListener(l);
+	}
+
+	@Override
+	public void addArtworkChangeListener(OnArtworkChangeListener l, Executor executor) {
+		mListenerRegistry.addArtworkChangeListener(l, executor);
+	}
+
+	@Override
+	public void removeArtworkChangeListener(OnArtworkChangeListener l) {
+		mListenerRegistry.removeArtworkChangeListener(l);
+	}
+
+	@Override
+	public void addArtworkHandleChangeListener(OnArtworkHandleChangeListener l, Executor executor) {
+		mListenerRegistry.addArtworkHandleChangeListener(l, executor);
+	}
+
+	@Override
+	public void removeArtworkHandleChangeListener(OnArtworkHandleChangeListener l) {
+		mListenerRegistry.removeArtworkHandleChangeListener(l);
+	}
+
+	@Override
+	public void addMetadataChangeListener(OnMetadataChangeListener l, Executor executor) {
+		mListenerRegistry.addMetadataChangeListener(l, executor);
+	}
+
+	@Override
+	public void removeMetadataChangeListener(OnMetadataChangeListener l) {
+		mListenerRegistry.removeMetadataChangeListener(l);
+	}
+
+	@Override
+	public void addPlaybackStateChangeListener(OnPlaybackStateChangeListener l, Executor executor) {
+		mListenerRegistry.addPlaybackStateChangeListener(l, executor);
+	}
+
+	@Override
+	public void removePlaybackStateChangeListener(OnPlaybackStateChangeListener l) {
+		mListenerRegistry.removePlaybackStateChangeListener(l);
+	}
+
+	@Override
+	public void addRemoteControlFeaturesChangeListener(OnRemoteControlFeaturesChangeListener l, Executor executor) {
+		mListenerRegistry.addRemoteControlFeaturesChangeListener(l, executor);
+	}
+
+	@Override
+	public void removeRemoteControlFeaturesChangeListener(OnRemoteControlFeaturesChangeListener l) {
+		mListenerRegistry.removeRemoteControlFeaturesChangeListener(l);
+	}
+
+	@Override
+	public void setTrackChangeListener(OnTrackChangeListener l) {
+		mListenerRegistry.setTrackChangeListener(l);
+	}
+
+	@Override
+	public void addTrackChangeListener(OnTrackChangeListener l, Executor executor) {
+		mListenerRegistry.addTrackChangeListener(l, executor);
+	}
+
+	@Override
+	public void removeTrackChangeListener(OnTrackChangeListener l) {
+		mListenerRegistry.removeTrackChangeListener(l);
+	}
+
+	@Override
+	public void setTrackChangeWindow(int windowMs) {
+		mListenerRegistry.setTrackChangeWindow(windowMs);
+	}
+
+	@Override
+	public PlaybackSnapshot getSnapshot() {
+		return mListenerRegistry.getSnapshot();
+	}
+
+	@Override
+	public CommandFuture sendMediaCommandAsync(MediaCommand command, long timeoutMs) {
+		// tracked before sending, so player's reaction can't be missed
+		CommandFuture future = mListenerRegistry.trackCommand(command, timeoutMs);
+		if(!sendMediaCommand(command)) {
+			future.complete(false);
+			mListenerRegistry.untrackCommand(future);
+		}
+		return future;
 	}
 
 	@Override
@@ -293,33 +350,31 @@ public class RemoteControlDisplayImplV14 implements RemoteControlDisplay {
 		return true;
 	}
 
+	@Override
+	public RemoteControllerStatistics getStatistics() {
+		return mStatistics;
+	}
+
+	@Override
+	public void setArtworkCacheSize(int maxBytes) {
+		mArtworkCache.setMaxSize(maxBytes);
+	}
+
+	@Override
+	public void setArtworkBitmapConfig(Bitmap.Config config) {
+		mArtworkProcessor.setConfig(config);
+	}
+
 	@Override
 	public void sendBroadcastMediaCommand(MediaCommand command, PendingIntent intent) {
-		switch (command) {
-		case REWIND:
-			sendBroadcastButton(KeyEvent.KEYCODE_MEDIA_REWIND, intent);
-			break;
-		case PREVIOUS:
-			sendBroadcastButton(KeyEvent.KEYCODE_MEDIA_PREVIOUS, intent);
-			break;
-		case PLAY:
-			sendBroadcastButton(KeyEvent.KEYCODE_MEDIA_PLAY, intent);
-			break;
-		case PAUSE:
-			sendBroadcastButton(KeyEvent.KEYCODE_MEDIA_PAUSE, intent);
-			break;
-		case PLAY_PAUSE:
-			sendBroadcastButton(KeyEvent.KEYCODE_MEDIA_PLAY_PAUSE, intent);
-			break;
-		case STOP:
-			sendBroadcastButton(KeyEvent.KEYCODE_MEDIA_STOP, intent);
-			break;
-		case NEXT:
-			sendBroadcastButton(KeyEvent.KEYCODE_MEDIA_NEXT, intent);
-			break;
-		case FAST_FORWARD:
-			sendBroadcastButton(KeyEvent.KEYCODE_MEDIA_FAST_FORWARD, intent);
-			break;
+		if (mContext != null) {
+			try {
+				long now = SystemClock.uptimeMillis();
+				intent.send(mContext, 0, MediaCommandEncoder.createDownIntent(command, now));
+				intent.send(mContext, 0, MediaCommandEncoder.createUpIntent(command, now));
+			} catch (CanceledException e) {
+				Log.e(TAG, "Sending broadcast to specific player has been cancelled");
+			}
 		}
 	}
 }
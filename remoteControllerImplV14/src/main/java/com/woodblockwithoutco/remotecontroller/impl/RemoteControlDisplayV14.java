@@ -35,6 +35,11 @@ class RemoteControlDisplayV14 extends IRemoteControlDisplay.Stub  {
 	protected final static int MSG_SET_TRANSPORT_CONTROLS = MSG_BASE + 3;
 	protected final static int MSG_SET_ARTWORK = MSG_BASE + 4;
 	protected final static int MSG_UPDATE_STATE = MSG_BASE + 5;
+	/*
+	 * Client events which are conflated, they must have consecutive codes.
+	 */
+	protected final static int FIRST_EVENT = MSG_SET_METADATA;
+	protected final static int EVENT_COUNT = 4;
 	
 
 
@@ -43,27 +48,51 @@ class RemoteControlDisplayV14 extends IRemoteControlDisplay.Stub  {
 	 * will happen in remote object.
 	 */
 	private WeakReference<Handler> mLocalHandler;
+	private volatile boolean mArtworkEnabled = true;
+	private ArtworkProcessor mArtworkProcessor;
+	private EventInterest mEventInterest;
+	private ConflatingQueue mPendingEvents;
 
-	public RemoteControlDisplayV14(Handler handler) {
+	public RemoteControlDisplayV14(Handler handler, ArtworkProcessor artworkProcessor, EventInterest eventInterest, ConflatingQueue pendingEvents) {
 		mLocalHandler = new WeakReference<Handler>(handler);
+		mArtworkProcessor = artworkProcessor;
+		mEventInterest = eventInterest;
+		mPendingEvents = pendingEvents;
+	}
+
+	/**
+	 * When disabled, artwork is dropped right here on the binder thread and
+	 * is never queued or delivered.
+	 */
+	public void setArtworkEnabled(boolean enabled) {
+		mArtworkEnabled = enabled;
+	}
+
+	private boolean wantsArtwork() {
+		return mArtworkEnabled && mEventInterest.contains(EventInterest.ARTWORK);
 	}
 
 	public void setAllMetadata(int generationId, Bundle metadata, Bitmap bitmap) {
+		if (!mPendingEvents.isCurrent(generationId)) return;
 		Handler handler = mLocalHandler.get();
 		if (handler != null) {
-			handler.obtainMessage(MSG_SET_METADATA, generationId, 0, metadata).sendToTarget();
-			handler.obtainMessage(MSG_SET_ARTWORK, generationId, 0, bitmap).sendToTarget();
+			mPendingEvents.offer(handler, MSG_SET_METADATA, generationId, 0, metadata);
+			if (wantsArtwork()) {
+				mArtworkProcessor.processAsync(bitmap, generationId, mPendingEvents, handler, MSG_SET_ARTWORK);
+			}
 		}
 	}
 
 	public void setArtwork(int generationId, Bitmap bitmap) {
+		if (!mPendingEvents.isCurrent(generationId)) return;
 		Handler handler = mLocalHandler.get();
-		if (handler != null) {
-			handler.obtainMessage(MSG_SET_ARTWORK, generationId, 0, bitmap).sendToTarget();
+		if (handler != null && wantsArtwork()) {
+			mArtworkProcessor.processAsync(bitmap, generationId, mPendingEvents, handler, MSG_SET_ARTWORK);
 		}
 	}
 
 	public void setCurrentClientId(int clientGeneration, PendingIntent mediaIntent, boolean clearing) throws RemoteException {
+		mPendingEvents.setGenerationId(clientGeneration);
 		Handler handler = mLocalHandler.get();
 		if (handler != null) {
 			handler.obtainMessage(MSG_SET_GENERATION_ID, clientGeneration, (clearing ? 1 : 0), mediaIntent).sendToTarget();
@@ -71,23 +100,27 @@ class RemoteControlDisplayV14 extends IRemoteControlDisplay.Stub  {
 	}
 
 	public void setMetadata(int generationId, Bundle metadata) {
+		if (!mPendingEvents.isCurrent(generationId)) return;
 		Handler handler = mLocalHandler.get();
 		if (handler != null) {
-			handler.obtainMessage(MSG_SET_METADATA, generationId, 0, metadata).sendToTarget();
+			mPendingEvents.offer(handler, MSG_SET_METADATA, generationId, 0, metadata);
 		}
 	}
 
 	public void setPlaybackState(int generationId, int state, long stateChangeTimeMs) {
+		if (!mPendingEvents.isCurrent(generationId)) return;
 		Handler handler = mLocalHandler.get();
 		if (handler != null) {
-			handler.obtainMessage(MSG_UPDATE_STATE, generationId, state).sendToTarget();
+			// ICS clients don't report position, so only state is passed on
+			mPendingEvents.offer(handler, MSG_UPDATE_STATE, generationId, state, null);
 		}
 	}
 
 	public void setTransportControlFlags(int generationId, int flags) {
+		if (!mPendingEvents.isCurrent(generationId)) return;
 		Handler handler = mLocalHandler.get();
-		if (handler != null) {
-			handler.obtainMessage(MSG_SET_TRANSPORT_CONTROLS, generationId, flags).sendToTarget();
+		if (handler != null && mEventInterest.contains(EventInterest.FEATURES)) {
+			mPendingEvents.offer(handler, MSG_SET_TRANSPORT_CONTROLS, generationId, 0, TransportControlFlags.decode(flags));
 		}
 	}
 }
@@ -37,6 +37,11 @@ class RemoteControlDisplayV18 extends IRemoteControlDisplay.Stub  {
 	protected final static int MSG_SET_TRANSPORT_CONTROLS = MSG_BASE + 3;
 	protected final static int MSG_SET_ARTWORK = MSG_BASE + 4;
 	protected final static int MSG_UPDATE_STATE = MSG_BASE + 5;
+	/*
+	 * Client events which are conflated, they must have consecutive codes.
+	 */
+	protected final static int FIRST_EVENT = MSG_SET_METADATA;
+	protected final static int EVENT_COUNT = 4;
 	
 
 
@@ -45,30 +50,56 @@ class RemoteControlDisplayV18 extends IRemoteControlDisplay.Stub  {
 	 * will happen in remote object.
 	 */
 	private WeakReference<Handler> mLocalHandler;
+	private volatile boolean mArtworkEnabled = true;
+	private ArtworkProcessor mArtworkProcessor;
+	private EventInterest mEventInterest;
+	private ConflatingQueue mPendingEvents;
 
-	public RemoteControlDisplayV18(Handler handler) {
+	public RemoteControlDisplayV18(Handler handler, ArtworkProcessor artworkProcessor, EventInterest eventInterest, ConflatingQueue pendingEvents) {
 		mLocalHandler = new WeakReference<Handler>(handler);
+		mArtworkProcessor = artworkProcessor;
+		mEventInterest = eventInterest;
+		mPendingEvents = pendingEvents;
+	}
+
+	/**
+	 * When disabled, artwork is dropped right here on the binder thread and
+	 * is never queued or delivered.
+	 */
+	public void setArtworkEnabled(boolean enabled) {
+		mArtworkEnabled = enabled;
+	}
+
+	private boolean wantsArtwork() {
+		return mArtworkEnabled && mEventInterest.contains(EventInterest.ARTWORK);
 	}
 
 	@Override
 	public void setAllMetadata(int generationId, Bundle metadata, Bitmap bitmap) {
+		if (!mPendingEvents.isCurrent(generationId)) return;
 		Handler handler = mLocalHandler.get();
 		if (handler != null) {
-			handler.obtainMessage(MSG_SET_METADATA, generationId, 0, metadata).sendToTarget();
-			handler.obtainMessage(MSG_SET_ARTWORK, generationId, 0, bitmap).sendToTarget();
+			if (mEventInterest.contains(EventInterest.METADATA | EventInterest.ARTWORK)) {
+				mPendingEvents.offer(handler, MSG_SET_METADATA, generationId, 0, metadata);
+			}
+			if (wantsArtwork()) {
+				mArtworkProcessor.processAsync(bitmap, generationId, mPendingEvents, handler, MSG_SET_ARTWORK);
+			}
 		}
 	}
 
 	@Override
 	public void setArtwork(int generationId, Bitmap bitmap) {
+		if (!mPendingEvents.isCurrent(generationId)) return;
 		Handler handler = mLocalHandler.get();
-		if (handler != null) {
-			handler.obtainMessage(MSG_SET_ARTWORK, generationId, 0, bitmap).sendToTarget();
+		if (handler != null && wantsArtwork()) {
+			mArtworkProcessor.processAsync(bitmap, generationId, mPendingEvents, handler, MSG_SET_ARTWORK);
 		}
 	}
 
 	@Override
 	public void setCurrentClientId(int clientGeneration, PendingIntent mediaIntent, boolean clearing) throws RemoteException {
+		mPendingEvents.setGenerationId(clientGeneration);
 		Handler handler = mLocalHandler.get();
 		if (handler != null) {
 			handler.obtainMessage(MSG_SET_GENERATION_ID, clientGeneration, (clearing ? 1 : 0), mediaIntent).sendToTarget();
@@ -77,26 +108,32 @@ class RemoteControlDisplayV18 extends IRemoteControlDisplay.Stub  {
 
 	@Override
 	public void setMetadata(int generationId, Bundle metadata) {
+		if (!mPendingEvents.isCurrent(generationId)) return;
 		Handler handler = mLocalHandler.get();
-		if (handler != null) {
-			handler.obtainMessage(MSG_SET_METADATA, generationId, 0, metadata).sendToTarget();
+		// album of metadata is needed to look up cached artwork
+		if (handler != null && mEventInterest.contains(EventInterest.METADATA | EventInterest.ARTWORK)) {
+			mPendingEvents.offer(handler, MSG_SET_METADATA, generationId, 0, metadata);
 		}
 	}
 
 
 	@Override
 	public void setPlaybackState(int generationId, int state, long stateChangeTimeMs, long currentPosMs, float speed) {
+		if (!mPendingEvents.isCurrent(generationId)) return;
 		Handler handler = mLocalHandler.get();
 		if (handler != null) {
-			handler.obtainMessage(MSG_UPDATE_STATE, generationId, state).sendToTarget();
+			PositionClock.Sample sample = new PositionClock.Sample(state, currentPosMs, stateChangeTimeMs, speed);
+			mPendingEvents.offer(handler, MSG_UPDATE_STATE, generationId, state, sample);
 		}
 	}
 
 	@Override
 	public void setTransportControlInfo(int generationId, int transportControlFlags, int posCapabilities) {
+		if (!mPendingEvents.isCurrent(generationId)) return;
 		Handler handler = mLocalHandler.get();
-		if (handler != null) {
-			handler.obtainMessage(MSG_SET_TRANSPORT_CONTROLS, generationId, transportControlFlags | posCapabilities).sendToTarget();
+		if (handler != null && mEventInterest.contains(EventInterest.FEATURES)) {
+			// positional capabilities use their own bits, they must not be mixed with key flags
+			mPendingEvents.offer(handler, MSG_SET_TRANSPORT_CONTROLS, generationId, 0, TransportControlFlags.decode(transportControlFlags, posCapabilities));
 		}
 	}
 }
@@ -15,28 +15,30 @@
  *******************************************************************************/
 package com.woodblockwithoutco.remotecontroller.impl;
 
-import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.Executor;
 
+import com.woodblockwithoutco.remotecontroller.ArtworkHandle;
+import com.woodblockwithoutco.remotecontroller.CommandFuture;
 import com.woodblockwithoutco.remotecontroller.MediaCommand;
 import com.woodblockwithoutco.remotecontroller.OnArtworkChangeListener;
+import com.woodblockwithoutco.remotecontroller.OnArtworkHandleChangeListener;
 import com.woodblockwithoutco.remotecontroller.OnMetadataChangeListener;
 import com.woodblockwithoutco.remotecontroller.OnPlaybackStateChangeListener;
 import com.woodblockwithoutco.remotecontroller.OnRemoteControlFeaturesChangeListener;
+import com.woodblockwithoutco.remotecontroller.OnTrackChangeListener;
 import com.woodblockwithoutco.remotecontroller.PlayState;
+import com.woodblockwithoutco.remotecontroller.PlaybackSnapshot;
+import com.woodblockwithoutco.remotecontroller.RegistrationFuture;
 import com.woodblockwithoutco.remotecontroller.RemoteControlDisplay;
 import com.woodblockwithoutco.remotecontroller.RemoteControlFeature;
+import com.woodblockwithoutco.remotecontroller.RemoteControllerStatistics;
 
 import android.app.PendingIntent;
-import android.content.BroadcastReceiver;
-import android.content.ComponentName;
 import android.content.Context;
 import android.content.Intent;
-import android.content.IntentFilter;
-import android.content.ServiceConnection;
 import android.graphics.Bitmap;
-import android.os.IBinder;
-import android.support.v4.content.LocalBroadcastManager;
+import android.os.Looper;
 
 
 
@@ -44,53 +46,112 @@ import android.support.v4.content.LocalBroadcastManager;
 public class RemoteControlDisplayImplV19 implements RemoteControlDisplay {
 
 	private Context mContext;
-	private IntentFilter mFilter;
-	private OnPlaybackStateChangeListener mPlaybackStateChangeListener;
-	private OnRemoteControlFeaturesChangeListener mRemoteControlFeaturesChangeListener;
-	private OnMetadataChangeListener mMetadataChangeListener;
-	private OnArtworkChangeListener mArtworkChangeListener;
-	private BroadcastReceiver mReceiver = new RemoteControllerServiceBroadcastReceiver();
-	private boolean mIsRegistered = false;
+	private ListenerRegistry mListenerRegistry = new ListenerRegistry();
+	private ServiceEventListener mServiceEventListener = new RemoteControllerServiceEventListener();
+	private volatile boolean mIsRegistered = false;
+	private PositionClock mPositionClock = new PositionClock();
+	/*
+	 * Statistics are collected by service, this instance is returned only
+	 * while service isn't running.
+	 */
+	private RemoteControllerStatistics mStatistics = new RemoteControllerStatistics();
+	// applied to service on registration, service might not be running yet
+	private int mArtworkCacheSize = 0;
+	private Bitmap.Config mArtworkBitmapConfig;
+	/*
+	 * Registration requested by user, it is applied whenever service starts.
+	 * Guarded by this, as requests and service events come from different
+	 * threads.
+	 */
+	private static final int REGISTRATION_NONE = 0;
+	private static final int REGISTRATION_ARTWORK = 1;
+	private static final int REGISTRATION_ARTWORK_SIZE = 2;
+	private static final int REGISTRATION_NO_ARTWORK = 3;
+	private int mRegistrationMode = REGISTRATION_NONE;
+	private int mArtworkWidth;
+	private int mArtworkHeight;
+	private RegistrationFuture mRegistration;
 
 
 	public RemoteControlDisplayImplV19(Context context) {
 		mContext = context;
-		mFilter = new IntentFilter();
-		mFilter.addAction(RemoteControlIntent.ACTION_ARTWORK_CHANGED);
-		mFilter.addAction(RemoteControlIntent.ACTION_METADATA_CHANGED);
-		mFilter.addAction(RemoteControlIntent.ACTION_PLAYBACK_STATE_CHANGED);
-		mFilter.addAction(RemoteControlIntent.ACTION_REMOTE_CONTROL_FEATURES_CHANGED);
+		// service events are dispatched on main thread
+		mListenerRegistry.setDispatchLooper(Looper.getMainLooper());
 	}
 
 	@Override
 	public boolean registerRemoteControls() {
-		RemoteControllerService instance = ServiceHolder.getService();
-		if(instance != null) {
-			mIsRegistered = instance.registerRemoteControls();
-		}
-		LocalBroadcastManager.getInstance(mContext).registerReceiver(mReceiver, mFilter);
-		return mIsRegistered;
-
+		return requestRegistration(REGISTRATION_ARTWORK, 0, 0);
 	}
 
 	@Override
 	public boolean registerRemoteControls(int width, int height) {
+		return requestRegistration(REGISTRATION_ARTWORK_SIZE, width, height);
+	}
+
+	@Override
+	public boolean registerRemoteControlsWithoutArtwork() {
+		return requestRegistration(REGISTRATION_NO_ARTWORK, 0, 0);
+	}
+
+	@Override
+	public synchronized RegistrationFuture getRegistrationFuture() {
+		if(mRegistration == null) return new RegistrationFuture(false);
+		return mRegistration;
+	}
+
+	private synchronized boolean requestRegistration(int mode, int width, int height) {
+		mRegistrationMode = mode;
+		mArtworkWidth = width;
+		mArtworkHeight = height;
+		// kept registered on bus to be told when service starts
+		ServiceEventBus.register(mServiceEventListener);
+		return applyRegistration();
+	}
+
+	/*
+	 * Called with lock held. Future stays pending until service is running,
+	 * then it completes with result of registration.
+	 */
+	private boolean applyRegistration() {
+		if(mRegistration == null || mRegistration.isDone()) {
+			mRegistration = new RegistrationFuture();
+		}
 		RemoteControllerService instance = ServiceHolder.getService();
-		if(instance != null) {
-			mIsRegistered = instance.registerRemoteControls(width, height);
+		if(instance == null) {
+			mIsRegistered = false;
+			return false;
 		}
-		if(mIsRegistered) LocalBroadcastManager.getInstance(mContext).registerReceiver(mReceiver, mFilter);
+		instance.setArtworkCacheSize(mArtworkCacheSize);
+		instance.setArtworkBitmapConfig(mArtworkBitmapConfig);
+		switch(mRegistrationMode) {
+		case REGISTRATION_ARTWORK:
+			mIsRegistered = instance.registerRemoteControls();
+			break;
+		case REGISTRATION_ARTWORK_SIZE:
+			mIsRegistered = instance.registerRemoteControls(mArtworkWidth, mArtworkHeight);
+			break;
+		case REGISTRATION_NO_ARTWORK:
+			mIsRegistered = instance.registerRemoteControlsWithoutArtwork();
+			break;
+		default:
+			mIsRegistered = false;
+			break;
+		}
+		mRegistration.complete(mIsRegistered);
 		return mIsRegistered;
 	}
 
 	@Override
-	public void unregisterRemoteControls() {
+	public synchronized void unregisterRemoteControls() {
 		mIsRegistered = false;
+		mRegistrationMode = REGISTRATION_NONE;
+		if(mRegistration != null) mRegistration.complete(false);
 		RemoteControllerService instance = ServiceHolder.getService();
 		if(instance != null) {
 			instance.unregisterRemoteControls();
-			LocalBroadcastManager.getInstance(mContext).unregisterReceiver(mReceiver);
 		}
+		ServiceEventBus.unregister(mServiceEventListener);
 	}
 
 	@Override
@@ -128,95 +189,188 @@ public class RemoteControlDisplayImplV19 implements RemoteControlDisplay {
 	public boolean sendMediaCommand(MediaCommand command) {
         RemoteControllerService instance = ServiceHolder.getService();
         if(instance != null) {
-            instance.sendMediaCommand(command);
+            return instance.sendMediaCommand(command);
 		}
 		return false;
 	}
 
 	@Override
 	public long getPosition() {
+		long position = mPositionClock.getPosition();
+		if(position != PositionClock.POSITION_UNKNOWN) return position;
+
         RemoteControllerService instance = ServiceHolder.getService();
         if(instance != null) {
             return instance.getPosition();
         }
 
-		return 0;
+		return PositionClock.POSITION_UNKNOWN;
 	}
 
 	@Override
 	public void setArtworkChangeListener(OnArtworkChangeListener l) {
-		mArtworkChangeListener = l;
+		mListenerRegistry.setArtworkChangeListener(l);
+	}
+
+	@Override
+	public void addArtworkChangeListener(OnArtworkChangeListener l, Executor executor) {
+		mListenerRegistry.addArtworkChangeListener(l, executor);
+	}
+
+	@Override
+	public void removeArtworkChangeListener(OnArtworkChangeListener l) {
+		mListenerRegistry.removeArtworkChangeListener(l);
+	}
+
+	@Override
+	public void setArtworkHandleChangeListener(OnArtworkHandleChangeListener l) {
+		mListenerRegistry.setArtworkHandleChangeListener(l);
+	}
+
+	@Override
+	public void addArtworkHandleChangeListener(OnArtworkHandleChangeListener l, Executor executor) {
+		mListenerRegistry.addArtworkHandleChangeListener(l, executor);
+	}
+
+	@Override
+	public void removeArtworkHandleChangeListener(OnArtworkHandleChangeListener l) {
+		mListenerRegistry.removeArtworkHandleChangeListener(l);
 	}
 
 	@Override
 	public void setMetadataChangeListener(OnMetadataChangeListener l) {
-		mMetadataChangeListener = l;
+		mListenerRegistry.setMetadataChangeListener(l);
+	}
+
+	@Override
+	public void addMetadataChangeListener(OnMetadataChangeListener l, Executor executor) {
+		mListenerRegistry.addMetadataChangeListener(l, executor);
+	}
+
+	@Override
+	public void removeMetadataChangeListener(OnMetadataChangeListener l) {
+		mListenerRegistry.removeMetadataChangeListener(l);
 	}
 
 	@Override
 	public void setPlaybackStateChangeListener(OnPlaybackStateChangeListener l) {
-		mPlaybackStateChangeListener = l;
+		mListenerRegistry.setPlaybackStateChangeListener(l);
+	}
+
+	@Override
+	public void addPlaybackStateChangeListener(OnPlaybackStateChangeListener l, Executor executor) {
+		mListenerRegistry.addPlaybackStateChangeListener(l, executor);
+	}
+
+	@Override
+	public void removePlaybackStateChangeListener(OnPlaybackStateChangeListener l) {
+		mListenerRegistry.removePlaybackStateChangeListener(l);
 	}
 
 	@Override
 	public void setRemoteControlFeaturesChangeListener(OnRemoteControlFeaturesChangeListener l) {
-		mRemoteControlFeaturesChangeListener = l;
+		mListenerRegistry.setRemoteControlFeaturesChangeListener(l);
 	}
 
+	@Override
+	public void addRemoteControlFeaturesChangeListener(OnRemoteControlFeaturesChangeListener l, Executor executor) {
+		mListenerRegistry.addRemoteControlFeaturesChangeListener(l, executor);
+	}
 
-	private class RemoteControllerServiceBroadcastReceiver extends BroadcastReceiver {
+	@Override
+	public void removeRemoteControlFeaturesChangeListener(OnRemoteControlFeaturesChangeListener l) {
+		mListenerRegistry.removeRemoteControlFeaturesChangeListener(l);
+	}
 
-		@Override
-		public void onReceive(Context context, Intent intent) {
-			String action = intent.getAction();
-			if(RemoteControlIntent.ACTION_METADATA_CHANGED.equals(action)) {
-				dispatchMetadataChange(intent);
-			} else if(RemoteControlIntent.ACTION_PLAYBACK_STATE_CHANGED.equals(action)) {
-				dispatchPlaystateChange(intent);
-			} else if(RemoteControlIntent.ACTION_ARTWORK_CHANGED.equals(action)) {
-				dispatchArtworkChange(intent);
-			} else if(RemoteControlIntent.ACTION_REMOTE_CONTROL_FEATURES_CHANGED.equals(action)) {
-				dispatchRemoteControlFeaturesChange(intent);
-			}
+	@Override
+	public void setTrackChangeListener(OnTrackChangeListener l) {
+		mListenerRegistry.setTrackChangeListener(l);
+	}
+
+	@Override
+	public void addTrackChangeListener(OnTrackChangeListener l, Executor executor) {
+		mListenerRegistry.addTrackChangeListener(l, executor);
+	}
+
+	@Override
+	public void removeTrackChangeListener(OnTrackChangeListener l) {
+		mListenerRegistry.removeTrackChangeListener(l);
+	}
+
+	@Override
+	public void setTrackChangeWindow(int windowMs) {
+		mListenerRegistry.setTrackChangeWindow(windowMs);
+	}
+
+	@Override
+	public PlaybackSnapshot getSnapshot() {
+		return mListenerRegistry.getSnapshot();
+	}
+
+	@Override
+	public CommandFuture sendMediaCommandAsync(MediaCommand command, long timeoutMs) {
+		// tracked before sending, so player's reaction can't be missed
+		CommandFuture future = mListenerRegistry.trackCommand(command, timeoutMs);
+		if(!sendMediaCommand(command)) {
+			future.complete(false);
+			mListenerRegistry.untrackCommand(future);
 		}
+		return future;
+	}
+
 
-		private void dispatchMetadataChange(Intent intent) {
-			if(mMetadataChangeListener != null) {
-				String artist = intent.getStringExtra("artist");
-				String albumArtist = intent.getStringExtra("albumArtist");
-				String title = intent.getStringExtra("title");
-				String album = intent.getStringExtra("album");
-				long duration = intent.getLongExtra("duration", -1);
+	private class RemoteControllerServiceEventListener implements ServiceEventListener {
+
+		@Override
+		public int getInterestMask() {
+			return mListenerRegistry.getEventInterest().getMask();
+		}
 
-				mMetadataChangeListener.onMetadataChanged(artist, title, album, albumArtist, duration);
+		@Override
+		public void onServiceStarted() {
+			synchronized(RemoteControlDisplayImplV19.this) {
+				if(mRegistrationMode != REGISTRATION_NONE) {
+					applyRegistration();
+				}
 			}
 		}
 
-		private void dispatchPlaystateChange(Intent intent) {
-			if(mPlaybackStateChangeListener != null) {
-				PlayState state = (PlayState) intent.getSerializableExtra("state");
-				state = state == null ? PlayState.STOPPED : state;
-				mPlaybackStateChangeListener.onPlaybackStateChanged(state);
+		@Override
+		public void onServiceStopped() {
+			synchronized(RemoteControlDisplayImplV19.this) {
+				// request is kept, it is applied again when service restarts
+				mIsRegistered = false;
 			}
 		}
 
-		private void dispatchArtworkChange(Intent intent) {
-			if(mArtworkChangeListener != null) {
-				Bitmap artwork = intent.getParcelableExtra("artwork");
-				mArtworkChangeListener.onArtworkChanged(artwork);
+		@Override
+		public void onClientChanged(boolean clearing, PendingIntent clientIntent) {
+			mPositionClock.reset();
+			mListenerRegistry.dispatchClientChanged(clientIntent);
+		}
+
+		@Override
+		public void onMetadataChanged(String artist, String title, String album, String albumArtist, long duration) {
+			mListenerRegistry.dispatchMetadataChanged(artist, title, album, albumArtist, duration);
+		}
+
+		@Override
+		public void onArtworkChanged(ArtworkHandle artwork) {
+			mListenerRegistry.dispatchArtworkChanged(artwork);
+		}
+
+		@Override
+		public void onPlaybackStateChanged(PlayState state, PositionClock.Sample position) {
+			if(position != null) {
+				mPositionClock.set(position);
 			}
+			mListenerRegistry.dispatchPlaybackStateChanged(state == null ? PlayState.STOPPED : state, position);
 		}
 
-		private void dispatchRemoteControlFeaturesChange(Intent intent) {
-			if(mRemoteControlFeaturesChangeListener != null) {
-				String[] features = intent.getStringArrayExtra("features");
-				if(features != null) {
-					List<RemoteControlFeature> result = new ArrayList<RemoteControlFeature>();
-					for(String s : features) {
-						result.add(RemoteControlFeature.valueOf(s));
-					}
-					mRemoteControlFeaturesChangeListener.onFeaturesChanged(result);
-				}
+		@Override
+		public void onFeaturesChanged(List<RemoteControlFeature> features) {
+			if(features != null) {
+				mListenerRegistry.dispatchFeaturesChanged(features);
 			}
 		}
 
@@ -236,7 +390,7 @@ public class RemoteControlDisplayImplV19 implements RemoteControlDisplay {
 	public boolean setSynchronizationEnabled(boolean enabled) {
         RemoteControllerService instance = ServiceHolder.getService();
         if(instance != null) {
-            instance.setSynchronizationEnabled(enabled);
+            return instance.setSynchronizationEnabled(enabled);
 		}
 		return false;
 	}
@@ -251,6 +405,33 @@ public class RemoteControlDisplayImplV19 implements RemoteControlDisplay {
 		return ServiceHolder.getService() != null;
 	}
 
+	@Override
+	public void setArtworkCacheSize(int maxBytes) {
+		mArtworkCacheSize = maxBytes;
+		RemoteControllerService instance = ServiceHolder.getService();
+		if(instance != null) {
+			instance.setArtworkCacheSize(maxBytes);
+		}
+	}
+
+	@Override
+	public void setArtworkBitmapConfig(Bitmap.Config config) {
+		mArtworkBitmapConfig = config;
+		RemoteControllerService instance = ServiceHolder.getService();
+		if(instance != null) {
+			instance.setArtworkBitmapConfig(config);
+		}
+	}
+
+	@Override
+	public RemoteControllerStatistics getStatistics() {
+		RemoteControllerService instance = ServiceHolder.getService();
+		if(instance != null) {
+			return instance.getStatistics();
+		}
+		return mStatistics;
+	}
+
 	@Override
 	public void sendBroadcastMediaCommand(MediaCommand command, PendingIntent intent) {
         RemoteControllerService instance = ServiceHolder.getService();
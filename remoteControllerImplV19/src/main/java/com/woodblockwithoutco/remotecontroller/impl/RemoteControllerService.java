@@ -16,33 +16,26 @@
 package com.woodblockwithoutco.remotecontroller.impl;
 
 
-import java.lang.reflect.Field;
-import java.lang.reflect.InvocationTargetException;
-import java.lang.reflect.Method;
-import java.util.ArrayList;
-import java.util.List;
-
 import com.woodblockwithoutco.remotecontroller.MediaCommand;
 import com.woodblockwithoutco.remotecontroller.PlayState;
-import com.woodblockwithoutco.remotecontroller.RemoteControlFeature;
 import com.woodblockwithoutco.remotecontroller.RemoteControllerIntents;
+import com.woodblockwithoutco.remotecontroller.RemoteControllerStatistics;
 
 import android.annotation.TargetApi;
 import android.os.Build.VERSION_CODES;
 import android.service.notification.NotificationListenerService;
 import android.service.notification.StatusBarNotification;
-import android.support.v4.content.LocalBroadcastManager;
 import android.util.Log;
-import android.view.KeyEvent;
 import android.app.PendingIntent;
 import android.app.PendingIntent.CanceledException;
 import android.content.Context;
 import android.content.Intent;
 import android.media.AudioManager;
 import android.media.MediaMetadataRetriever;
-import android.media.RemoteControlClient;
 import android.media.RemoteController;
 import android.media.RemoteController.MetadataEditor;
+import android.graphics.Bitmap;
+import android.os.Handler;
 import android.os.SystemClock;
 
 @TargetApi(VERSION_CODES.KITKAT)
@@ -55,46 +48,37 @@ public class RemoteControllerService extends NotificationListenerService impleme
 	private static final Intent MUSIC_SERVICE_UNBIND_INTENT = new Intent(RemoteControllerIntents.MUSIC_SERVICE_UNBIND_ACTION);
 
 	private RemoteController mRemoteController;
-	private List<String> mFeatureList;
-	private Field mPendingIntentField;
-
-	private Method mSetSynchronizationMethod;
-	private Field mRcdField;
+	private PositionClock mPositionClock = new PositionClock();
+	private boolean mArtworkEnabled = true;
+	private int mClientGeneration;
+	private RemoteControllerStatistics mStatistics;
+	private ArtworkChangeDetector mArtworkChangeDetector;
+	private ArtworkCache mArtworkCache;
+	private String mAlbumKey;
+	private ArtworkProcessor mArtworkProcessor;
+	private Handler mHandler;
+	private volatile ClientIdentity mClientIdentity;
+
+	/*
+	 * Hidden members are looked up on first use, a missing one only disables
+	 * the feature which needs it.
+	 */
+	private static final HiddenApi.FieldRef PENDING_INTENT_FIELD = HiddenApi.field(RemoteController.class, "mClientPendingIntentCurrent");
+	private static final HiddenApi.FieldRef RCD_FIELD = HiddenApi.field(RemoteController.class, "mRcd");
+	private static final HiddenApi.MethodRef SET_SYNCHRONIZATION_METHOD = HiddenApi.method(AudioManager.class, "remoteControlDisplayWantsPlaybackPositionSync", "android.media.IRemoteControlDisplay", boolean.class);
 
 	@Override
 	public void onCreate() {
 		mRemoteController = new RemoteController(getApplicationContext(), this);
-		mFeatureList = new ArrayList<String>();
-
-		try {
-			mPendingIntentField = RemoteController.class.getDeclaredField("mClientPendingIntentCurrent");
-			mPendingIntentField.setAccessible(true);
-		} catch (NoSuchFieldException e) {
-			throw new NullPointerException("Can't find RemoteControl pending intent field!");
-		}
-
-		Class<?> IRCDclass;
-		try {
-			IRCDclass = Class.forName("android.media.IRemoteControlDisplay");
-		} catch (ClassNotFoundException e) {
-			throw new NullPointerException("Can't find IRemoteControlDisplay class!");
-		}
-
-		try {
-			mSetSynchronizationMethod = AudioManager.class.getDeclaredMethod("remoteControlDisplayWantsPlaybackPositionSync", IRCDclass, boolean.class);
-			mSetSynchronizationMethod.setAccessible(true);
-		} catch (NoSuchMethodException e) {
-			throw new NullPointerException("Can't find synchronization method!");
-		}
-
-		try {
-			mRcdField = RemoteController.class.getDeclaredField("mRcd");
-			mRcdField.setAccessible(true);
-		} catch (NoSuchFieldException e) {
-			throw new NullPointerException("Can't find mRcd field!");
-		}
+		mStatistics = new RemoteControllerStatistics();
+		mArtworkChangeDetector = new ArtworkChangeDetector(mStatistics);
+		mArtworkCache = new ArtworkCache(mStatistics);
+		mHandler = new Handler();
+		mArtworkProcessor = new ArtworkProcessor();
 
         ServiceHolder.setService(this);
+        // displays which registered before service started are registered now
+        ServiceEventBus.dispatchServiceStarted();
         sendBroadcast(MUSIC_SERVICE_BIND_INTENT);
 
 	}
@@ -103,6 +87,7 @@ public class RemoteControllerService extends NotificationListenerService impleme
 	public void onDestroy() {
 		sendBroadcast(MUSIC_SERVICE_UNBIND_INTENT);
         ServiceHolder.setService(null);
+        ServiceEventBus.dispatchServiceStopped();
 	}
 
 	@Override
@@ -115,138 +100,177 @@ public class RemoteControllerService extends NotificationListenerService impleme
 		return;
 	}
 
+	/**
+	 * @return false if synchronization isn't supported on this device.
+	 */
 	public boolean setSynchronizationEnabled(boolean enabled) {
+		if (!SET_SYNCHRONIZATION_METHOD.isAvailable()) return false;
+		Object rcd = RCD_FIELD.getValue(mRemoteController);
+		if (rcd == null) return false;
 		AudioManager manager = (AudioManager) getSystemService(Context.AUDIO_SERVICE);
-		boolean result = false;
-		try {
-			Object rcd = mRcdField.get(mRemoteController);
-			mSetSynchronizationMethod.invoke(manager, rcd, enabled);
-			return true;
-		} catch (IllegalAccessException e) {
-			result = false;
-		} catch (IllegalArgumentException e) {
-			result = false;
-		} catch (InvocationTargetException e) {
-			result = false;
-		}
-		return result;
+		return SET_SYNCHRONIZATION_METHOD.invoke(manager, rcd, enabled);
 	}
 
 	@Override
 	public void onClientChange(boolean clearing) {
+		mClientGeneration++;
+		mPositionClock.reset();
+		mAlbumKey = null;
+		// identity of client is resolved only here
+		PendingIntent clientIntent = getClientPendingIntent();
+		ClientIdentity identity = ClientIdentity.resolve(this, clientIntent);
+		mClientIdentity = identity;
+		if(identity != null) {
+			MediaButtonResolver.getInstance(this).setActivePackage(identity.packageName);
+		}
+		ServiceEventBus.dispatchClientChanged(clearing, clientIntent);
 		if(clearing) {
-			Intent clearingIntent = new Intent(RemoteControlIntent.ACTION_METADATA_CHANGED);
-			clearingIntent.putExtra("artist", (String)null);
-			clearingIntent.putExtra("albumArtist", (String)null);
-			clearingIntent.putExtra("title", (String)null);
-			clearingIntent.putExtra("album", (String)null);
-			clearingIntent.putExtra("duration", (long)-1);
-			LocalBroadcastManager.getInstance(getApplicationContext()).sendBroadcast(clearingIntent);
+			ServiceEventBus.dispatchMetadataChanged(null, null, null, null, -1);
 		}
 	}
 
 	@Override
 	public void onClientMetadataUpdate(MetadataEditor editor) {
+		int interest = ServiceEventBus.getInterestMask();
+		boolean notifyMetadata = (interest & EventInterest.METADATA) != 0;
+		boolean notifyArtwork = mArtworkEnabled && (interest & EventInterest.ARTWORK) != 0;
+		if(!notifyMetadata && !notifyArtwork) return;
+
 		String artist = editor.getString(MediaMetadataRetriever.METADATA_KEY_ARTIST, null);
 		String albumArtist = editor.getString(MediaMetadataRetriever.METADATA_KEY_ALBUMARTIST, null);
-		String title = editor.getString(MediaMetadataRetriever.METADATA_KEY_TITLE, null);
 		String album = editor.getString(MediaMetadataRetriever.METADATA_KEY_ALBUM, null);
-		long duration = editor.getLong(MediaMetadataRetriever.METADATA_KEY_DURATION, -1);
-
-		Intent metadataChangeIntent = new Intent(RemoteControlIntent.ACTION_METADATA_CHANGED);
-		metadataChangeIntent.putExtra("artist", artist);
-		metadataChangeIntent.putExtra("albumArtist", albumArtist);
-		metadataChangeIntent.putExtra("title", title);
-		metadataChangeIntent.putExtra("album", album);
-		metadataChangeIntent.putExtra("duration", duration);
-		LocalBroadcastManager.getInstance(getApplicationContext()).sendBroadcast(metadataChangeIntent);
-
-		Intent artworkChangeIntent = new Intent(RemoteControlIntent.ACTION_ARTWORK_CHANGED);
-		artworkChangeIntent.putExtra("artwork", editor.getBitmap(MetadataEditor.BITMAP_KEY_ARTWORK, null));
-		LocalBroadcastManager.getInstance(getApplicationContext()).sendBroadcast(artworkChangeIntent);
+
+		if(notifyMetadata) {
+			String title = editor.getString(MediaMetadataRetriever.METADATA_KEY_TITLE, null);
+			long duration = editor.getLong(MediaMetadataRetriever.METADATA_KEY_DURATION, -1);
+			ServiceEventBus.dispatchMetadataChanged(artist, title, album, albumArtist, duration);
+		}
+		if(notifyArtwork) {
+			updateAlbum(ArtworkCache.getAlbumKey(artist, album, albumArtist));
+			dispatchArtworkIfChanged(editor.getBitmap(MetadataEditor.BITMAP_KEY_ARTWORK, null));
+		}
+	}
+
+	/*
+	 * Cached artwork is served as soon as album changes, player's own artwork
+	 * is then suppressed if it's the same.
+	 */
+	private void updateAlbum(String albumKey) {
+		if(albumKey == null || albumKey.equals(mAlbumKey)) {
+			mAlbumKey = albumKey;
+			return;
+		}
+		mAlbumKey = albumKey;
+		Artwork cached = mArtworkCache.get(albumKey);
+		if(cached != null) {
+			mArtworkChangeDetector.markDelivered(mClientGeneration, cached);
+			ServiceEventBus.dispatchArtworkChanged(cached.handle);
+			cached.release();
+		}
+	}
+
+	/*
+	 * Artwork is processed on artwork worker, and dispatched back on this
+	 * thread only if it has changed and client is still the same.
+	 */
+	private void dispatchArtworkIfChanged(final Bitmap bitmap) {
+		final int generation = mClientGeneration;
+		final String albumKey = mAlbumKey;
+		ArtworkWorker.getHandler().post(new Runnable() {
+			@Override
+			public void run() {
+				final Artwork artwork = mArtworkProcessor.process(bitmap);
+				mHandler.post(new Runnable() {
+					@Override
+					public void run() {
+						if(generation == mClientGeneration) {
+							mArtworkCache.put(albumKey, artwork);
+							if(mArtworkChangeDetector.isChanged(generation, artwork)) {
+								ServiceEventBus.dispatchArtworkChanged(artwork.handle);
+							}
+						} else {
+							mStatistics.onStaleEventDropped();
+						}
+						// listeners and cache took their own references
+						artwork.release();
+					}
+				});
+			}
+		});
 	}
 
 	@Override
 	public void onClientPlaybackStateUpdate(int state) {
-		onClientPlaybackStateUpdate(state, 0, 0, 1.0f);
+		// no sync data, position is estimated from the last known one if any
+		mPositionClock.update(state, SystemClock.elapsedRealtime(), PositionClock.POSITION_UNKNOWN, 1.0f);
+		dispatchPlaybackState(state);
 	}
 
 	@Override
 	public void onClientPlaybackStateUpdate(int state, long stateChangeTimeMs, long currentPosMs, float speed) {
-		PlayState resultState = null;
-		switch(state) {
-		case RemoteControlClient.PLAYSTATE_BUFFERING:
-			resultState = PlayState.BUFFERING;
-			break;
-		case RemoteControlClient.PLAYSTATE_ERROR:
-			resultState =  PlayState.ERROR;
-			break;
-		case RemoteControlClient.PLAYSTATE_FAST_FORWARDING:
-			resultState = PlayState.FAST_FORWARDING;
-			break;
-		case RemoteControlClient.PLAYSTATE_PAUSED:
-			resultState = PlayState.PAUSED;
-			break;
-		case RemoteControlClient.PLAYSTATE_PLAYING:
-			resultState = PlayState.PLAYING;
-			break;
-		case RemoteControlClient.PLAYSTATE_REWINDING:
-			resultState = PlayState.REWINDING;
-			break;
-		case RemoteControlClient.PLAYSTATE_SKIPPING_BACKWARDS:
-			resultState = PlayState.SKIPPING_BACKWARDS;
-			break;
-		case RemoteControlClient.PLAYSTATE_SKIPPING_FORWARDS:
-			resultState = PlayState.SKIPPING_FORWARDS;
-			break;
-		case RemoteControlClient.PLAYSTATE_STOPPED:
-		default:
-			resultState = PlayState.STOPPED;
-			break;
-		}
+		mPositionClock.update(state, stateChangeTimeMs, currentPosMs, speed);
+		dispatchPlaybackState(state);
+	}
 
-		Intent playStateChangeIntent = new Intent(RemoteControlIntent.ACTION_PLAYBACK_STATE_CHANGED);
-		playStateChangeIntent.putExtra("state", resultState);
-		LocalBroadcastManager.getInstance(getApplicationContext()).sendBroadcast(playStateChangeIntent);
+	private void dispatchPlaybackState(int state) {
+		PlayState resultState = PlayStates.fromClientState(state);
+		if(resultState == null) resultState = PlayState.STOPPED;
+		ServiceEventBus.dispatchPlaybackStateChanged(resultState, mPositionClock.getSample());
 	}
 
 
 	@Override
 	public void onClientTransportControlUpdate(int flags) {
-		mFeatureList.clear();
-		if ((flags | RemoteControlClient.FLAG_KEY_MEDIA_FAST_FORWARD) == flags) mFeatureList.add(RemoteControlFeature.USES_FAST_FORWARD.name());
-		if ((flags | RemoteControlClient.FLAG_KEY_MEDIA_NEXT) == flags) mFeatureList.add(RemoteControlFeature.USES_NEXT.name());
-		if ((flags | RemoteControlClient.FLAG_KEY_MEDIA_PAUSE) == flags) mFeatureList.add(RemoteControlFeature.USES_PAUSE.name());
-		if ((flags | RemoteControlClient.FLAG_KEY_MEDIA_PLAY) == flags) mFeatureList.add(RemoteControlFeature.USES_PLAY.name());
-		if ((flags | RemoteControlClient.FLAG_KEY_MEDIA_PLAY_PAUSE) == flags) mFeatureList.add(RemoteControlFeature.USES_PLAY_PAUSE.name());
-		if ((flags | RemoteControlClient.FLAG_KEY_MEDIA_PREVIOUS) == flags) mFeatureList.add(RemoteControlFeature.USES_PREVIOUS.name());
-		if ((flags | RemoteControlClient.FLAG_KEY_MEDIA_REWIND) == flags) mFeatureList.add(RemoteControlFeature.USES_REWIND.name());
-		if ((flags | RemoteControlClient.FLAG_KEY_MEDIA_STOP) == flags) mFeatureList.add(RemoteControlFeature.USES_STOP.name());
-		if ((flags | RemoteControlClient.FLAG_KEY_MEDIA_POSITION_UPDATE) == flags) mFeatureList.add(RemoteControlFeature.USES_SCRUBBING.name());
-
-
-		Intent remoteControlFeaturesChangeIntent = new Intent(RemoteControlIntent.ACTION_REMOTE_CONTROL_FEATURES_CHANGED);
-		remoteControlFeaturesChangeIntent.putExtra("features", mFeatureList.toArray(new String[mFeatureList.size()]));
-		LocalBroadcastManager.getInstance(getApplicationContext()).sendBroadcast(remoteControlFeaturesChangeIntent);
+		if((ServiceEventBus.getInterestMask() & EventInterest.FEATURES) != 0) {
+			ServiceEventBus.dispatchFeaturesChanged(TransportControlFlags.decode(flags));
+		}
 	}
 
 	public boolean registerRemoteControls() {
+		mArtworkChangeDetector.reset();
 		AudioManager manager = (AudioManager)getApplicationContext().getSystemService(Context.AUDIO_SERVICE);
+		mArtworkEnabled = true;
+		mArtworkProcessor.setMaxSize(ArtworkProcessor.ORIGINAL_SIZE, ArtworkProcessor.ORIGINAL_SIZE);
 		return manager.registerRemoteController(mRemoteController);
 	}
 
 	public boolean registerRemoteControls(int w, int h) {
+		mArtworkChangeDetector.reset();
 		AudioManager manager = (AudioManager)getApplicationContext().getSystemService(Context.AUDIO_SERVICE);
+		mArtworkEnabled = true;
+		mArtworkProcessor.setMaxSize(w, h);
 		mRemoteController.setArtworkConfiguration(w, h);
 		return manager.registerRemoteController(mRemoteController);
 	}
 
+	public boolean registerRemoteControlsWithoutArtwork() {
+		mArtworkChangeDetector.reset();
+		AudioManager manager = (AudioManager)getApplicationContext().getSystemService(Context.AUDIO_SERVICE);
+		mArtworkEnabled = false;
+		mRemoteController.clearArtworkConfiguration();
+		return manager.registerRemoteController(mRemoteController);
+	}
+
 	public void unregisterRemoteControls() {
 		AudioManager manager = (AudioManager)getApplicationContext().getSystemService(Context.AUDIO_SERVICE);
 		manager.unregisterRemoteController(mRemoteController);
 	}
 
+	public void setArtworkCacheSize(int maxBytes) {
+		mArtworkCache.setMaxSize(maxBytes);
+	}
+
+	public void setArtworkBitmapConfig(Bitmap.Config config) {
+		mArtworkProcessor.setConfig(config);
+	}
+
+	public RemoteControllerStatistics getStatistics() {
+		return mStatistics;
+	}
+
 	public long getPosition() {
+		long position = mPositionClock.getPosition();
+		if(position != PositionClock.POSITION_UNKNOWN) return position;
 		return mRemoteController.getEstimatedMediaPosition();
 	}
 
@@ -256,162 +280,56 @@ public class RemoteControllerService extends NotificationListenerService impleme
 
 
 	public void sendBroadcastMediaCommand(MediaCommand command) {
-		switch (command) {
-		case REWIND:
-			sendBroadcastButton(KeyEvent.KEYCODE_MEDIA_REWIND);
-			break;
-		case PREVIOUS:
-			sendBroadcastButton(KeyEvent.KEYCODE_MEDIA_PREVIOUS);
-			break;
-		case PLAY:
-			sendBroadcastButton(KeyEvent.KEYCODE_MEDIA_PLAY);
-			break;
-		case PAUSE:
-			sendBroadcastButton(KeyEvent.KEYCODE_MEDIA_PAUSE);
-			break;
-		case PLAY_PAUSE:
-			sendBroadcastButton(KeyEvent.KEYCODE_MEDIA_PLAY_PAUSE);
-			break;
-		case STOP:
-			sendBroadcastButton(KeyEvent.KEYCODE_MEDIA_STOP);
-			break;
-		case NEXT:
-			sendBroadcastButton(KeyEvent.KEYCODE_MEDIA_NEXT);
-			break;
-		case FAST_FORWARD:
-			sendBroadcastButton(KeyEvent.KEYCODE_MEDIA_FAST_FORWARD);
-			break;
+		Context context = getApplicationContext();
+		if(context != null && !MediaButtonResolver.getInstance(context).send(command)) {
+			long now = SystemClock.uptimeMillis();
+			context.sendOrderedBroadcast(MediaCommandEncoder.createDownIntent(command, now), null);
+			context.sendOrderedBroadcast(MediaCommandEncoder.createUpIntent(command, now), null);
 		}
 	}
 
 
 	public boolean sendMediaCommand(MediaCommand command) {
-		switch (command) {
-		case REWIND:
-			return sendButton(KeyEvent.KEYCODE_MEDIA_REWIND);
-		case PREVIOUS:
-			return sendButton(KeyEvent.KEYCODE_MEDIA_PREVIOUS);
-		case PLAY:
-			return sendButton(KeyEvent.KEYCODE_MEDIA_PLAY);
-		case PAUSE:
-			return sendButton(KeyEvent.KEYCODE_MEDIA_PAUSE);
-		case PLAY_PAUSE:
-			return sendButton(KeyEvent.KEYCODE_MEDIA_PLAY_PAUSE);
-		case STOP:
-			return sendButton(KeyEvent.KEYCODE_MEDIA_STOP);
-		case NEXT:
-			return sendButton(KeyEvent.KEYCODE_MEDIA_NEXT);
-		case FAST_FORWARD:
-			return sendButton(KeyEvent.KEYCODE_MEDIA_FAST_FORWARD);
-		}
-		return false;
-	}
-
-	private boolean sendButton(int keyCode) {
-		KeyEvent keyEvent = new KeyEvent(KeyEvent.ACTION_DOWN, keyCode);
-		Intent intent = new Intent(Intent.ACTION_MEDIA_BUTTON);
-		intent.putExtra(Intent.EXTRA_KEY_EVENT, keyEvent);
-		mRemoteController.sendMediaKeyEvent(keyEvent);
-		keyEvent = new KeyEvent(KeyEvent.ACTION_UP, keyCode);
-		intent = new Intent(Intent.ACTION_MEDIA_BUTTON);
-		intent.putExtra(Intent.EXTRA_KEY_EVENT, keyEvent);
-		return mRemoteController.sendMediaKeyEvent(keyEvent);
-	}
-
-	private void sendBroadcastButton(int keyCode) {
-		Context context = getApplicationContext();
-		if(context != null) {
-			long eventtime = SystemClock.uptimeMillis();
-			Intent keyIntent = new Intent(Intent.ACTION_MEDIA_BUTTON, null);
-			KeyEvent keyEvent = new KeyEvent(eventtime, eventtime, KeyEvent.ACTION_DOWN, keyCode, 0);
-			keyIntent.putExtra(Intent.EXTRA_KEY_EVENT, keyEvent);
-			context.sendOrderedBroadcast(keyIntent, null);
-			keyEvent = KeyEvent.changeAction(keyEvent, KeyEvent.ACTION_UP);
-			keyIntent.putExtra(Intent.EXTRA_KEY_EVENT, keyEvent);
-			context.sendOrderedBroadcast(keyIntent, null);
-		}
+		long now = SystemClock.uptimeMillis();
+		boolean down = mRemoteController.sendMediaKeyEvent(MediaCommandEncoder.createDownEvent(command, now));
+		boolean up = mRemoteController.sendMediaKeyEvent(MediaCommandEncoder.createUpEvent(command, now));
+		return down && up;
 	}
 
-	private void sendBroadcastButton(int keyCode, PendingIntent pintent) {
-		Context context = getApplicationContext();
-		if(context != null) {
-			try {
-				long eventtime = SystemClock.uptimeMillis();
-				Intent keyIntent = new Intent(Intent.ACTION_MEDIA_BUTTON, null);
-				KeyEvent keyEvent = new KeyEvent(eventtime, eventtime, KeyEvent.ACTION_DOWN, keyCode, 0);
-				keyIntent.putExtra(Intent.EXTRA_KEY_EVENT, keyEvent);
-				pintent.send(context, 0, keyIntent);
-				keyEvent = KeyEvent.changeAction(keyEvent, KeyEvent.ACTION_UP);
-				keyIntent.putExtra(Intent.EXTRA_KEY_EVENT, keyEvent);
-				pintent.send(context, 0, keyIntent);
-			} catch (CanceledException e) {
-				Log.e(TAG, "Sending broadcast to specific player has been cancelled");
-			}
-		}
+	/*
+	 * RemoteController doesn't expose PendingIntent of current client.
+	 */
+	private PendingIntent getClientPendingIntent() {
+		return (PendingIntent) PENDING_INTENT_FIELD.getValue(mRemoteController);
 	}
 
 	public Intent getCurrentClientIntent() {
-		PendingIntent clientIntent;
-		try {
-			clientIntent = (PendingIntent) mPendingIntentField.get(mRemoteController);
-
-			if(clientIntent == null) return null;
+		ClientIdentity identity = mClientIdentity;
 
-			String packageName = clientIntent.getCreatorPackage();
+		if(identity == null) return null;
 
-			if(packageName == null) return null;
+		Intent result = identity.getLaunchIntent();
 
-			Intent result = getPackageManager().getLaunchIntentForPackage(packageName);
+		if(result == null) return null;
 
-			if(result == null) return null;
-
-			result.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
-			return result;
-		} catch (IllegalAccessException e) {
-			return null;
-		} catch (IllegalArgumentException e) {
-			return null;
-		}
+		result.addFlags(Intent.FLAG_ACTIVITY_NEW_TASK);
+		return result;
 	}
 
 	public boolean isClientActive() {
-		PendingIntent clientIntent;
-		try {
-			clientIntent = (PendingIntent) mPendingIntentField.get(mRemoteController);
-			return clientIntent != null;
-		} catch (IllegalAccessException e) {
-			return false;
-		} catch (IllegalArgumentException e) {
-			return false;
-		}
+		return mClientIdentity != null;
 	}
 
 	public void sendBroadcastMediaCommand(MediaCommand command, PendingIntent intent) {
-		switch (command) {
-		case REWIND:
-			sendBroadcastButton(KeyEvent.KEYCODE_MEDIA_REWIND, intent);
-			break;
-		case PREVIOUS:
-			sendBroadcastButton(KeyEvent.KEYCODE_MEDIA_PREVIOUS, intent);
-			break;
-		case PLAY:
-			sendBroadcastButton(KeyEvent.KEYCODE_MEDIA_PLAY, intent);
-			break;
-		case PAUSE:
-			sendBroadcastButton(KeyEvent.KEYCODE_MEDIA_PAUSE, intent);
-			break;
-		case PLAY_PAUSE:
-			sendBroadcastButton(KeyEvent.KEYCODE_MEDIA_PLAY_PAUSE, intent);
-			break;
-		case STOP:
-			sendBroadcastButton(KeyEvent.KEYCODE_MEDIA_STOP, intent);
-			break;
-		case NEXT:
-			sendBroadcastButton(KeyEvent.KEYCODE_MEDIA_NEXT, intent);
-			break;
-		case FAST_FORWARD:
-			sendBroadcastButton(KeyEvent.KEYCODE_MEDIA_FAST_FORWARD, intent);
-			break;
+		Context context = getApplicationContext();
+		if(context != null) {
+			try {
+				long now = SystemClock.uptimeMillis();
+				intent.send(context, 0, MediaCommandEncoder.createDownIntent(command, now));
+				intent.send(context, 0, MediaCommandEncoder.createUpIntent(command, now));
+			} catch (CanceledException e) {
+				Log.e(TAG, "Sending broadcast to specific player has been cancelled");
+			}
 		}
 	}
 }
@@ -0,0 +1,130 @@
+/*******************************************************************************
+ * Copyright 2014 Alexander Leontyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.woodblockwithoutco.remotecontroller.impl;
+
+import java.util.List;
+
+import com.woodblockwithoutco.remotecontroller.ArtworkHandle;
+import com.woodblockwithoutco.remotecontroller.PlayState;
+import com.woodblockwithoutco.remotecontroller.RemoteControlFeature;
+
+import android.app.PendingIntent;
+
+/**
+ * In-process bus between RemoteControllerService and RemoteControlDisplayImplV19.
+ * Events are handed to listeners directly on the thread which dispatches them
+ * (the looper RemoteController was created on), so no Intent is built and
+ * nothing is re-posted.
+ */
+class ServiceEventBus {
+
+	private static final ServiceEventListener[] EMPTY = new ServiceEventListener[0];
+
+	/*
+	 * Copy-on-write array, so dispatching doesn't allocate an iterator and
+	 * never needs a lock.
+	 */
+	private static volatile ServiceEventListener[] sListeners = EMPTY;
+
+	public static synchronized void register(ServiceEventListener l) {
+		ServiceEventListener[] listeners = sListeners;
+		for(ServiceEventListener listener : listeners) {
+			if(listener == l) return;
+		}
+		ServiceEventListener[] result = new ServiceEventListener[listeners.length + 1];
+		System.arraycopy(listeners, 0, result, 0, listeners.length);
+		result[listeners.length] = l;
+		sListeners = result;
+	}
+
+	public static synchronized void unregister(ServiceEventListener l) {
+		ServiceEventListener[] listeners = sListeners;
+		for(int i = 0; i < listeners.length; i++) {
+			if(listeners[i] == l) {
+				if(listeners.length == 1) {
+					sListeners = EMPTY;
+					return;
+				}
+				ServiceEventListener[] result = new ServiceEventListener[listeners.length - 1];
+				System.arraycopy(listeners, 0, result, 0, i);
+				System.arraycopy(listeners, i + 1, result, i, listeners.length - i - 1);
+				sListeners = result;
+				return;
+			}
+		}
+	}
+
+	/**
+	 * @return Union of interest masks of all registered listeners.
+	 */
+	public static int getInterestMask() {
+		ServiceEventListener[] listeners = sListeners;
+		int mask = EventInterest.NONE;
+		for(int i = 0; i < listeners.length; i++) {
+			mask |= listeners[i].getInterestMask();
+		}
+		return mask;
+	}
+
+	public static void dispatchServiceStarted() {
+		ServiceEventListener[] listeners = sListeners;
+		for(int i = 0; i < listeners.length; i++) {
+			listeners[i].onServiceStarted();
+		}
+	}
+
+	public static void dispatchServiceStopped() {
+		ServiceEventListener[] listeners = sListeners;
+		for(int i = 0; i < listeners.length; i++) {
+			listeners[i].onServiceStopped();
+		}
+	}
+
+	public static void dispatchClientChanged(boolean clearing, PendingIntent clientIntent) {
+		ServiceEventListener[] listeners = sListeners;
+		for(int i = 0; i < listeners.length; i++) {
+			listeners[i].onClientChanged(clearing, clientIntent);
+		}
+	}
+
+	public static void dispatchMetadataChanged(String artist, String title, String album, String albumArtist, long duration) {
+		ServiceEventListener[] listeners = sListeners;
+		for(int i = 0; i < listeners.length; i++) {
+			listeners[i].onMetadataChanged(artist, title, album, albumArtist, duration);
+		}
+	}
+
+	public static void dispatchArtworkChanged(ArtworkHandle artwork) {
+		ServiceEventListener[] listeners = sListeners;
+		for(int i = 0; i < listeners.length; i++) {
+			listeners[i].onArtworkChanged(artwork);
+		}
+	}
+
+	public static void dispatchPlaybackStateChanged(PlayState state, PositionClock.Sample position) {
+		ServiceEventListener[] listeners = sListeners;
+		for(int i = 0; i < listeners.length; i++) {
+			listeners[i].onPlaybackStateChanged(state, position);
+		}
+	}
+
+	public static void dispatchFeaturesChanged(List<RemoteControlFeature> features) {
+		ServiceEventListener[] listeners = sListeners;
+		for(int i = 0; i < listeners.length; i++) {
+			listeners[i].onFeaturesChanged(features);
+		}
+	}
+}
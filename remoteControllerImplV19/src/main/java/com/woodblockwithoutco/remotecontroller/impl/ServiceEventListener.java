@@ -0,0 +1,69 @@
+/*******************************************************************************
+ * Copyright 2014 Alexander Leontyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.woodblockwithoutco.remotecontroller.impl;
+
+import java.util.List;
+
+import com.woodblockwithoutco.remotecontroller.ArtworkHandle;
+import com.woodblockwithoutco.remotecontroller.PlayState;
+import com.woodblockwithoutco.remotecontroller.RemoteControlFeature;
+
+import android.app.PendingIntent;
+
+/**
+ * Typed events sent by RemoteControllerService through ServiceEventBus.
+ * Shouldn't be used explicitly by user.
+ */
+interface ServiceEventListener {
+
+	/**
+	 * @return Mask of {@link EventInterest} event types this listener wants.
+	 *         Service doesn't produce events no listener wants.
+	 */
+	public int getInterestMask();
+
+	/**
+	 * Called when service is created, it is already available from
+	 * ServiceHolder.
+	 */
+	public void onServiceStarted();
+
+	public void onServiceStopped();
+
+	/**
+	 * @param clientIntent
+	 *            PendingIntent of new client, may be null.
+	 */
+	public void onClientChanged(boolean clearing, PendingIntent clientIntent);
+
+	public void onMetadataChanged(String artist, String title, String album, String albumArtist, long duration);
+
+	/**
+	 * @param artwork
+	 *            Artwork or null, listener must acquire it to keep it past
+	 *            this call.
+	 */
+	public void onArtworkChanged(ArtworkHandle artwork);
+
+	/**
+	 * @param position
+	 *            Position sample published by service at the time of this
+	 *            state change, may be null.
+	 */
+	public void onPlaybackStateChanged(PlayState state, PositionClock.Sample position);
+
+	public void onFeaturesChanged(List<RemoteControlFeature> features);
+}
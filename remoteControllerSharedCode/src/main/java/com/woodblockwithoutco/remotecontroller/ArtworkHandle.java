@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright 2014 Alexander Leontyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.woodblockwithoutco.remotecontroller;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import android.graphics.Bitmap;
+
+/**
+ * Reference counted artwork. Bitmap created by library, for example a scaled
+ * copy, is recycled when the last reference is released, while player's own
+ * bitmap is left to GC. Artwork can be kept past artwork update without
+ * copying it: call
+ * {@link #acquire()} to keep it and {@link #release()} once it isn't needed
+ * anymore. Can be used from any thread.
+ */
+public final class ArtworkHandle {
+
+	private final Bitmap mBitmap;
+	private final boolean mOwned;
+	private final AtomicInteger mRefCount = new AtomicInteger(1);
+
+	/**
+	 * Creates handle holding one reference. Called by implementation and
+	 * shouldn't be used explicitly by user.
+	 * 
+	 * @param owned
+	 *            True if bitmap was allocated by library and can be recycled
+	 *            once released, false if it may still be used by its owner.
+	 */
+	public ArtworkHandle(Bitmap bitmap, boolean owned) {
+		if(bitmap == null) throw new IllegalArgumentException("Artwork bitmap can't be null");
+		mBitmap = bitmap;
+		mOwned = owned;
+	}
+
+	/**
+	 * @return Artwork bitmap. It must not be used after the reference was
+	 *         released.
+	 */
+	public Bitmap getBitmap() {
+		return mBitmap;
+	}
+
+	/**
+	 * Takes one more reference to artwork, which must be released later.
+	 * 
+	 * @return This handle.
+	 * @throws IllegalStateException
+	 *             If all references were already released.
+	 */
+	public ArtworkHandle acquire() {
+		for(;;) {
+			int count = mRefCount.get();
+			if(count <= 0) throw new IllegalStateException("Artwork is already released");
+			if(mRefCount.compareAndSet(count, count + 1)) return this;
+		}
+	}
+
+	/**
+	 * Takes one more reference to artwork if it wasn't released yet.
+	 * 
+	 * @return This handle or null if all references were already released.
+	 */
+	public ArtworkHandle tryAcquire() {
+		for(;;) {
+			int count = mRefCount.get();
+			if(count <= 0) return null;
+			if(mRefCount.compareAndSet(count, count + 1)) return this;
+		}
+	}
+
+	/**
+	 * Releases one reference to artwork. Bitmap owned by library is recycled
+	 * when the last reference is released.
+	 * 
+	 * @throws IllegalStateException
+	 *             If all references were already released.
+	 */
+	public void release() {
+		int count = mRefCount.decrementAndGet();
+		if(count == 0) {
+			if(mOwned) mBitmap.recycle();
+		} else if(count < 0) {
+			mRefCount.incrementAndGet();
+			throw new IllegalStateException("Artwork is already released");
+		}
+	}
+
+	/**
+	 * @return True if all references were released and bitmap must not be
+	 *         used anymore.
+	 */
+	public boolean isReleased() {
+		return mRefCount.get() <= 0;
+	}
+}
@@ -0,0 +1,57 @@
+/*******************************************************************************
+ * Copyright 2014 Alexander Leontyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.woodblockwithoutco.remotecontroller;
+
+import android.os.SystemClock;
+
+/**
+ * Result of a media command sent with
+ * {@link RemoteControlDisplay#sendMediaCommandAsync(MediaCommand, long)}. It
+ * completes with true when player reacted to command, or with false when
+ * command couldn't be sent or player didn't react in time. Can be used from
+ * any thread.
+ */
+public final class CommandFuture extends ResultFuture {
+
+	private final MediaCommand mCommand;
+	private final long mSentTime = SystemClock.elapsedRealtime();
+	private long mLatency = -1;
+
+	/**
+	 * Creates pending future of command which is about to be sent. Called by
+	 * implementation and shouldn't be used explicitly by user.
+	 */
+	public CommandFuture(MediaCommand command) {
+		mCommand = command;
+	}
+
+	public MediaCommand getCommand() {
+		return mCommand;
+	}
+
+	/**
+	 * @return Time in milliseconds between sending command and the player's
+	 *         reaction to it, or -1 if player didn't react (yet).
+	 */
+	public synchronized long getLatency() {
+		return mLatency;
+	}
+
+	@Override
+	void onSucceeded() {
+		mLatency = SystemClock.elapsedRealtime() - mSentTime;
+	}
+}
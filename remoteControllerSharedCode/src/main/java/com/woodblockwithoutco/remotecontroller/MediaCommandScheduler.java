@@ -0,0 +1,181 @@
+/*******************************************************************************
+ * Copyright 2014 Alexander Leontyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.woodblockwithoutco.remotecontroller;
+
+import java.util.ArrayDeque;
+import java.util.concurrent.atomic.AtomicLong;
+
+import android.os.Handler;
+import android.os.Looper;
+import android.os.SystemClock;
+
+/**
+ * Optional queue in front of {@link RemoteControlDisplay} for commands which
+ * can come in bursts, for example from repeatedly pressed buttons. Commands
+ * are held for a short window and collapsed while they wait:
+ * <ul>
+ * <li>STOP drops all pending commands.</li>
+ * <li>PLAY or PAUSE drops PLAY, PAUSE and PLAY_PAUSE queued right before it,
+ * but never ones queued before a different command.</li>
+ * <li>Two PLAY_PAUSE in a row cancel each other.</li>
+ * </ul>
+ * Media buttons can't skip several tracks at once, so NEXT and PREVIOUS are
+ * kept, but like all commands they are sent no more often than minimal
+ * interval allows. Commands can be sent from any thread, they are passed to
+ * display on the looper of scheduler.
+ */
+public class MediaCommandScheduler {
+
+	public static final long DEFAULT_WINDOW_MS = 100;
+	public static final long DEFAULT_MIN_INTERVAL_MS = 150;
+
+	private final RemoteControlDisplay mDisplay;
+	private final Handler mHandler;
+	private final long mWindowMs;
+	private final long mMinIntervalMs;
+
+	private final ArrayDeque<MediaCommand> mQueue = new ArrayDeque<MediaCommand>();
+	private boolean mScheduled;
+	private long mLastSentTime;
+
+	private final AtomicLong mSentCommandCount = new AtomicLong();
+	private final AtomicLong mCoalescedCommandCount = new AtomicLong();
+
+	private final Runnable mSendNext = new Runnable() {
+		@Override
+		public void run() {
+			sendNext();
+		}
+	};
+
+	/**
+	 * Creates scheduler with default window and interval, which passes
+	 * commands to display on main thread.
+	 */
+	public MediaCommandScheduler(RemoteControlDisplay display) {
+		this(display, Looper.getMainLooper(), DEFAULT_WINDOW_MS, DEFAULT_MIN_INTERVAL_MS);
+	}
+
+	/**
+	 * @param looper
+	 *            Looper of thread on which commands are passed to display.
+	 * @param windowMs
+	 *            Time in milliseconds a command waits for others to be
+	 *            collapsed with before the first one is sent.
+	 * @param minIntervalMs
+	 *            Minimal time in milliseconds between two commands sent to
+	 *            player.
+	 */
+	public MediaCommandScheduler(RemoteControlDisplay display, Looper looper, long windowMs, long minIntervalMs) {
+		mDisplay = display;
+		mHandler = new Handler(looper);
+		mWindowMs = windowMs;
+		mMinIntervalMs = minIntervalMs;
+		mLastSentTime = -minIntervalMs;
+	}
+
+	/**
+	 * Queues command, it's sent with
+	 * {@link RemoteControlDisplay#sendMediaCommand(MediaCommand)} later.
+	 */
+	public void send(MediaCommand command) {
+		long delay;
+		synchronized(this) {
+			enqueue(command);
+			if(mScheduled || mQueue.isEmpty()) return;
+			mScheduled = true;
+			long wait = mLastSentTime + mMinIntervalMs - SystemClock.uptimeMillis();
+			delay = Math.max(mWindowMs, wait);
+		}
+		mHandler.postDelayed(mSendNext, delay);
+	}
+
+	/**
+	 * Drops all pending commands.
+	 */
+	public synchronized void clear() {
+		mQueue.clear();
+	}
+
+	/**
+	 * @return Number of commands waiting to be sent.
+	 */
+	public synchronized int getQueueDepth() {
+		return mQueue.size();
+	}
+
+	/**
+	 * @return Number of commands passed to display.
+	 */
+	public long getSentCommandCount() {
+		return mSentCommandCount.get();
+	}
+
+	/**
+	 * @return Number of commands which were collapsed and never sent.
+	 */
+	public long getCoalescedCommandCount() {
+		return mCoalescedCommandCount.get();
+	}
+
+	private void enqueue(MediaCommand command) {
+		switch(command) {
+		case STOP:
+			mCoalescedCommandCount.addAndGet(mQueue.size());
+			mQueue.clear();
+			break;
+		case PLAY:
+		case PAUSE:
+			while(isPlayStateCommand(mQueue.peekLast())) {
+				mQueue.pollLast();
+				mCoalescedCommandCount.incrementAndGet();
+			}
+			break;
+		case PLAY_PAUSE:
+			if(mQueue.peekLast() == MediaCommand.PLAY_PAUSE) {
+				mQueue.pollLast();
+				mCoalescedCommandCount.addAndGet(2);
+				return;
+			}
+			break;
+		default:
+			break;
+		}
+		mQueue.addLast(command);
+	}
+
+	private static boolean isPlayStateCommand(MediaCommand command) {
+		return command == MediaCommand.PLAY || command == MediaCommand.PAUSE || command == MediaCommand.PLAY_PAUSE;
+	}
+
+	private void sendNext() {
+		MediaCommand command;
+		boolean more;
+		synchronized(this) {
+			command = mQueue.pollFirst();
+			if(command == null) {
+				mScheduled = false;
+				return;
+			}
+			mLastSentTime = SystemClock.uptimeMillis();
+			more = !mQueue.isEmpty();
+			mScheduled = more;
+		}
+		mDisplay.sendMediaCommand(command);
+		mSentCommandCount.incrementAndGet();
+		if(more) mHandler.postDelayed(mSendNext, mMinIntervalMs);
+	}
+}
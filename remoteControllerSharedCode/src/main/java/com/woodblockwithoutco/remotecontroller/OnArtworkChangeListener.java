@@ -24,8 +24,13 @@ public interface OnArtworkChangeListener {
 	 * 
 	 * @param artwork
 	 *            Bitmap containing current artwork. May be null if it wasn't
-	 *            specified by player. Please note that previous Bitmap is
-	 *            recycled after artwork update!
+	 *            specified by player. It is only valid during this call:
+	 *            a copy made by library, for example a scaled one, is
+	 *            recycled once artwork is replaced and no
+	 *            {@link ArtworkHandle} references it anymore, while player's
+	 *            own bitmap is never recycled by library. Use
+	 *            {@link OnArtworkHandleChangeListener} to keep artwork longer
+	 *            without copying it.
 	 */
 	public void onArtworkChanged(Bitmap artwork);
 }
@@ -13,12 +13,19 @@
  * See the License for the specific language governing permissions and
  * limitations under the License.
  *******************************************************************************/
-package com.woodblockwithoutco.remotecontroller.impl;
+package com.woodblockwithoutco.remotecontroller;
 
-public class RemoteControlIntent {
+public interface OnArtworkHandleChangeListener {
 
-	public final static String ACTION_PLAYBACK_STATE_CHANGED = "com.woodblockwithoutco.PLAYBACK_STATE_CHANGED";
-	public final static String ACTION_REMOTE_CONTROL_FEATURES_CHANGED = "com.woodblockwithoutco.REMOTE_CONTROL_FEATURES_CHANGED";
-	public final static String ACTION_METADATA_CHANGED = "com.woodblockwithoutco.ACTION_METADATA_CHANGED";
-	public final static String ACTION_ARTWORK_CHANGED = "com.woodblockwithoutco.ARTWORK_CHANGED";
+	/**
+	 * Called when artwork of current song album was updated.
+	 * 
+	 * @param artwork
+	 *            Handle of current artwork or null if it wasn't specified by
+	 *            player. Handle stays valid only until the next artwork
+	 *            update, call {@link ArtworkHandle#acquire()} to keep it
+	 *            longer and {@link ArtworkHandle#release()} when it isn't
+	 *            needed anymore.
+	 */
+	public void onArtworkChanged(ArtworkHandle artwork);
 }
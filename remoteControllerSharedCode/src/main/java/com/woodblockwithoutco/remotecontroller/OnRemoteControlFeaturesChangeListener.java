@@ -28,7 +28,8 @@ public interface OnRemoteControlFeaturesChangeListener {
 	 *            example, if list contains
 	 *            {@link RemoteControlFeature#USES_FAST_FORWARD} and
 	 *            {@link RemoteControlFeature#USES_REWIND}, then the player
-	 *            supports rewinding and fast forwarding.
+	 *            supports rewinding and fast forwarding. The list is
+	 *            immutable and may be shared between calls.
 	 */
 	public void onFeaturesChanged(List<RemoteControlFeature> usesFeatures);
 }
@@ -0,0 +1,48 @@
+/*******************************************************************************
+ * Copyright 2014 Alexander Leontyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.woodblockwithoutco.remotecontroller;
+
+public interface OnTrackChangeListener {
+
+	/**
+	 * Called once for metadata, artwork and playback state updates which
+	 * arrived together, so title and artwork of a new song are never seen
+	 * separately.
+	 * 
+	 * @param artist
+	 *            Artist of current song. May be null if wasn't specified by
+	 *            player.
+	 * @param title
+	 *            Title of current song. May be null if wasn't specified by
+	 *            player.
+	 * @param album
+	 *            Current song album title. May be null if wasn't specified by
+	 *            player.
+	 * @param albumArtist
+	 *            Current song album artist. May be null if wasn't specified by
+	 *            player.
+	 * @param duration
+	 *            Song duration in milliseconds.
+	 * @param artwork
+	 *            Handle of current artwork or null. It stays valid only until
+	 *            the next artwork update, see
+	 *            {@link OnArtworkHandleChangeListener}.
+	 * @param state
+	 *            Last known playback state, null if player didn't report it
+	 *            yet.
+	 */
+	public void onTrackChanged(String artist, String title, String album, String albumArtist, long duration, ArtworkHandle artwork, PlayState state);
+}
@@ -0,0 +1,182 @@
+/*******************************************************************************
+ * Copyright 2014 Alexander Leontyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.woodblockwithoutco.remotecontroller;
+
+import java.util.Collections;
+import java.util.List;
+
+import com.woodblockwithoutco.remotecontroller.impl.PlayStates;
+import com.woodblockwithoutco.remotecontroller.impl.PositionClock;
+
+import android.app.PendingIntent;
+import android.os.SystemClock;
+
+/**
+ * Immutable state of current client as last seen by display. A new snapshot
+ * is published on every update, so it can be read from any thread without
+ * locking and its values are always consistent with each other.
+ */
+public final class PlaybackSnapshot {
+
+	public static final long POSITION_UNKNOWN = -1;
+
+	/**
+	 * Snapshot with no client.
+	 */
+	public static final PlaybackSnapshot EMPTY = new PlaybackSnapshot(0, null, null, null, null, null, -1, null, null,
+			Collections.<RemoteControlFeature> emptyList(), POSITION_UNKNOWN, 0, 1.0f);
+
+	private final int mGeneration;
+	private final PendingIntent mClientIntent;
+	private final String mArtist;
+	private final String mTitle;
+	private final String mAlbum;
+	private final String mAlbumArtist;
+	private final long mDuration;
+	private final ArtworkHandle mArtwork;
+	private final PlayState mPlayState;
+	private final List<RemoteControlFeature> mFeatures;
+	private final long mPositionMs;
+	private final long mPositionTimestampMs;
+	private final float mSpeed;
+
+	private PlaybackSnapshot(int generation, PendingIntent clientIntent, String artist, String title, String album, String albumArtist, long duration,
+			ArtworkHandle artwork, PlayState playState, List<RemoteControlFeature> features, long positionMs, long positionTimestampMs, float speed) {
+		mGeneration = generation;
+		mClientIntent = clientIntent;
+		mArtist = artist;
+		mTitle = title;
+		mAlbum = album;
+		mAlbumArtist = albumArtist;
+		mDuration = duration;
+		mArtwork = artwork;
+		mPlayState = playState;
+		mFeatures = features;
+		mPositionMs = positionMs;
+		mPositionTimestampMs = positionTimestampMs;
+		mSpeed = speed;
+	}
+
+	/*
+	 * Methods below create updated copies of snapshot. They are called by
+	 * implementation and shouldn't be used explicitly by user.
+	 */
+
+	public PlaybackSnapshot withClient(PendingIntent clientIntent) {
+		return new PlaybackSnapshot(mGeneration + 1, clientIntent, null, null, null, null, -1, null, null,
+				EMPTY.mFeatures, POSITION_UNKNOWN, 0, 1.0f);
+	}
+
+	public PlaybackSnapshot withMetadata(String artist, String title, String album, String albumArtist, long duration) {
+		return new PlaybackSnapshot(mGeneration, mClientIntent, artist, title, album, albumArtist, duration,
+				mArtwork, mPlayState, mFeatures, mPositionMs, mPositionTimestampMs, mSpeed);
+	}
+
+	public PlaybackSnapshot withArtwork(ArtworkHandle artwork) {
+		return new PlaybackSnapshot(mGeneration, mClientIntent, mArtist, mTitle, mAlbum, mAlbumArtist, mDuration,
+				artwork, mPlayState, mFeatures, mPositionMs, mPositionTimestampMs, mSpeed);
+	}
+
+	public PlaybackSnapshot withPlayState(PlayState playState) {
+		return new PlaybackSnapshot(mGeneration, mClientIntent, mArtist, mTitle, mAlbum, mAlbumArtist, mDuration,
+				mArtwork, playState, mFeatures, mPositionMs, mPositionTimestampMs, mSpeed);
+	}
+
+	/**
+	 * @param timestampMs
+	 *            Time of position in {@link SystemClock#elapsedRealtime()}
+	 *            base.
+	 */
+	public PlaybackSnapshot withPosition(long positionMs, long timestampMs, float speed) {
+		return new PlaybackSnapshot(mGeneration, mClientIntent, mArtist, mTitle, mAlbum, mAlbumArtist, mDuration,
+				mArtwork, mPlayState, mFeatures, positionMs, timestampMs, speed);
+	}
+
+	public PlaybackSnapshot withFeatures(List<RemoteControlFeature> features) {
+		return new PlaybackSnapshot(mGeneration, mClientIntent, mArtist, mTitle, mAlbum, mAlbumArtist, mDuration,
+				mArtwork, mPlayState, features, mPositionMs, mPositionTimestampMs, mSpeed);
+	}
+
+	/**
+	 * @return Number of client changes seen by display, snapshots of
+	 *         different clients never have the same generation.
+	 */
+	public int getGeneration() {
+		return mGeneration;
+	}
+
+	/**
+	 * @return PendingIntent of current client or null if there's no client.
+	 */
+	public PendingIntent getClientIntent() {
+		return mClientIntent;
+	}
+
+	public String getArtist() {
+		return mArtist;
+	}
+
+	public String getTitle() {
+		return mTitle;
+	}
+
+	public String getAlbum() {
+		return mAlbum;
+	}
+
+	public String getAlbumArtist() {
+		return mAlbumArtist;
+	}
+
+	/**
+	 * @return Song duration in milliseconds, -1 if unknown.
+	 */
+	public long getDuration() {
+		return mDuration;
+	}
+
+	/**
+	 * @return Current artwork with a new reference, which must be released
+	 *         by caller, or null if there's no artwork or it was already
+	 *         replaced by a newer one.
+	 */
+	public ArtworkHandle acquireArtwork() {
+		return mArtwork != null ? mArtwork.tryAcquire() : null;
+	}
+
+	/**
+	 * @return Last known playback state, null if player didn't report it.
+	 */
+	public PlayState getPlayState() {
+		return mPlayState;
+	}
+
+	/**
+	 * @return Unmodifiable list of features, empty if player didn't report
+	 *         them.
+	 */
+	public List<RemoteControlFeature> getFeatures() {
+		return mFeatures;
+	}
+
+	/**
+	 * @return Playback position estimated for the moment of call or
+	 *         {@link #POSITION_UNKNOWN}.
+	 */
+	public long getPosition() {
+		return PositionClock.extrapolate(mPositionMs, mPositionTimestampMs, mSpeed, PlayStates.isMoving(mPlayState), SystemClock.elapsedRealtime());
+	}
+}
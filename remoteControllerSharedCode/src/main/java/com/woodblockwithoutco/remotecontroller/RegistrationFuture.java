@@ -0,0 +1,41 @@
+/*******************************************************************************
+ * Copyright 2014 Alexander Leontyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.woodblockwithoutco.remotecontroller;
+
+/**
+ * Result of registration returned by
+ * {@link RemoteControlDisplay#getRegistrationFuture()}. It completes with
+ * true once remote controls are registered, or with false when they were
+ * unregistered first or registration was refused. Can be used from any
+ * thread.
+ */
+public final class RegistrationFuture extends ResultFuture {
+
+	/**
+	 * Creates pending future. Called by implementation and shouldn't be used
+	 * explicitly by user.
+	 */
+	public RegistrationFuture() {
+	}
+
+	/**
+	 * Creates future which is already completed. Called by implementation
+	 * and shouldn't be used explicitly by user.
+	 */
+	public RegistrationFuture(boolean registered) {
+		complete(registered);
+	}
+}
@@ -15,12 +15,36 @@
  *******************************************************************************/
 package com.woodblockwithoutco.remotecontroller;
 
+import java.util.concurrent.Executor;
+
 import android.app.PendingIntent;
 import android.content.Intent;
+import android.graphics.Bitmap;
 
 public interface RemoteControlDisplay {
 	public boolean registerRemoteControls();
 	public boolean registerRemoteControls(int width, int height);
+
+	/**
+	 * Registers remote controls which never receive artwork, so no Bitmap is
+	 * transferred from player. On API lower than 18 artwork is still sent by
+	 * the system, but it is dropped as soon as it arrives.
+	 */
+	public boolean registerRemoteControlsWithoutArtwork();
+
+	/**
+	 * On API 19 and higher registration needs notification listener service,
+	 * which may start later than remote controls are registered. The request
+	 * is kept and applied as soon as service starts, and again after each
+	 * restart of service, together with artwork settings and listeners. On
+	 * lower API registration is applied right away.
+	 * 
+	 * @return Future of the latest registration, which completes with true
+	 *         once it is applied, or with false if remote controls were
+	 *         unregistered before that or were never registered.
+	 */
+	public RegistrationFuture getRegistrationFuture();
+
 	public void unregisterRemoteControls();
 	public void unregisterAndDestroyRemoteControls();
 	public Intent getCurrentClientIntent();
@@ -29,13 +53,109 @@ public interface RemoteControlDisplay {
 	public void sendBroadcastMediaCommand(MediaCommand command);
 	public void sendBroadcastMediaCommand(MediaCommand command, PendingIntent intent);
 	public boolean sendMediaCommand(MediaCommand command);
+
+	/**
+	 * Sends media command and tracks player's reaction to it: metadata
+	 * change for {@link MediaCommand#NEXT} and {@link MediaCommand#PREVIOUS},
+	 * playback state change for other commands. A command which doesn't
+	 * change anything, like PLAY while playing, times out.
+	 * 
+	 * @param timeoutMs
+	 *            Time in milliseconds to wait for player's reaction.
+	 * @return Future which completes with true when player reacted, and with
+	 *         false when command couldn't be sent or timed out.
+	 */
+	public CommandFuture sendMediaCommandAsync(MediaCommand command, long timeoutMs);
+
+	/**
+	 * @return Current playback position in milliseconds, or -1 if it is
+	 *         unknown. Players on API lower than 18 don't report position,
+	 *         so there it is always unknown.
+	 */
 	public long getPosition();
 	public boolean seekTo(long position);
 	public boolean setSynchronizationEnabled(boolean enabled);
 	public boolean pingService();
+	public RemoteControllerStatistics getStatistics();
+
+	/**
+	 * @return Latest state of current client, can be called from any thread
+	 *         and never blocks. Events which have no listener aren't
+	 *         received, so the first call makes display receive all of them
+	 *         and snapshot may lack some values until player updates them.
+	 */
+	public PlaybackSnapshot getSnapshot();
+
+	/**
+	 * Sets size of artwork cache, which keeps artwork of recently played
+	 * albums and delivers it as soon as track changes, before player sends
+	 * its own artwork.
+	 * 
+	 * @param maxBytes
+	 *            Maximum total byte count of cached bitmaps, 0 to disable
+	 *            cache. Cache is disabled by default.
+	 */
+	public void setArtworkCacheSize(int maxBytes);
+
+	/**
+	 * Sets config of delivered artwork, for example RGB_565 to use half of
+	 * the memory. Conversion is done on a background thread.
+	 * 
+	 * @param config
+	 *            Config of artwork or null to keep config chosen by player,
+	 *            which is the default.
+	 */
+	public void setArtworkBitmapConfig(Bitmap.Config config);
 
 	public void setArtworkChangeListener(OnArtworkChangeListener l);
+
+	/**
+	 * Sets listener which receives reference counted artwork, so it can be
+	 * kept after artwork update without copying. Can be used together with
+	 * {@link OnArtworkChangeListener}.
+	 */
+	public void setArtworkHandleChangeListener(OnArtworkHandleChangeListener l);
+
 	public void setMetadataChangeListener(OnMetadataChangeListener l);
 	public void setPlaybackStateChangeListener(OnPlaybackStateChangeListener l);
 	public void setRemoteControlFeaturesChangeListener(OnRemoteControlFeaturesChangeListener l);
+
+	/**
+	 * Sets listener which receives metadata, artwork and playback state of a
+	 * new song in a single call. Updates which arrive within track change
+	 * window are merged. Per-type listeners aren't affected and are still
+	 * called for every update, so a track change listener cuts the number of
+	 * calls only when it is used instead of them, not together with them.
+	 */
+	public void setTrackChangeListener(OnTrackChangeListener l);
+
+	/**
+	 * @param windowMs
+	 *            Time in milliseconds during which updates are merged into a
+	 *            single track change, 50 by default. With 0 only updates
+	 *            which are already waiting to be dispatched are merged.
+	 */
+	public void setTrackChangeWindow(int windowMs);
+
+	/*
+	 * Listeners added with add methods are kept together with the one set
+	 * with matching set method. Each listener is called on executor it was
+	 * added with. Listeners without executor are called directly on thread
+	 * which dispatches events of display: RemoteController dispatches on
+	 * thread which constructed it, main thread if that one has no looper,
+	 * while background processing and API 19 and higher dispatch on main
+	 * thread.
+	 */
+	public void addArtworkChangeListener(OnArtworkChangeListener l, Executor executor);
+	public void removeArtworkChangeListener(OnArtworkChangeListener l);
+	public void addArtworkHandleChangeListener(OnArtworkHandleChangeListener l, Executor executor);
+	public void removeArtworkHandleChangeListener(OnArtworkHandleChangeListener l);
+	public void addMetadataChangeListener(OnMetadataChangeListener l, Executor executor);
+	public void removeMetadataChangeListener(OnMetadataChangeListener l);
+	public void addPlaybackStateChangeListener(OnPlaybackStateChangeListener l, Executor executor);
+	public void removePlaybackStateChangeListener(OnPlaybackStateChangeListener l);
+	public void addRemoteControlFeaturesChangeListener(OnRemoteControlFeaturesChangeListener l, Executor executor);
+	public void removeRemoteControlFeaturesChangeListener(OnRemoteControlFeaturesChangeListener l);
+	public void addTrackChangeListener(OnTrackChangeListener l, Executor executor);
+	public void removeTrackChangeListener(OnTrackChangeListener l);
 }
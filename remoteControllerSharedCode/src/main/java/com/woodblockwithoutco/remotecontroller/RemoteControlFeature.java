@@ -58,12 +58,12 @@ public enum RemoteControlFeature {
 	USES_STOP,
 	
 	/**
-	 * Client uses positioning. Please note this is unsupported on API lower than API 19. 
+	 * Client uses positioning. Please note this is unsupported on API lower than API 18. 
 	 */
 	USES_POSITION,
 	
 	/**
-	 * Client uses position scrubbing. Please note this is unsupported on API lower than API 19.
+	 * Client uses position scrubbing. Please note this is unsupported on API lower than API 18.
 	 */
 	USES_SCRUBBING
 }
@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright 2014 Alexander Leontyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.woodblockwithoutco.remotecontroller;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.woodblockwithoutco.remotecontroller.impl.HiddenApi;
+
+/**
+ * Counters collected by remote controls while they are registered. All
+ * getters can be called from any thread. Methods which update counters are
+ * called by implementation and shouldn't be used explicitly by user.
+ */
+public class RemoteControllerStatistics {
+
+	private final AtomicLong mDeliveredArtworkCount = new AtomicLong();
+	private final AtomicLong mSuppressedArtworkCount = new AtomicLong();
+	private final AtomicLong mArtworkCacheHitCount = new AtomicLong();
+	private final AtomicLong mArtworkCacheMissCount = new AtomicLong();
+	private final AtomicLong mArtworkCacheEvictionCount = new AtomicLong();
+	private final AtomicLong mDroppedStaleEventCount = new AtomicLong();
+	private final AtomicLong mConflatedEventCount = new AtomicLong();
+
+	/**
+	 * @return Number of artwork updates which were delivered to
+	 *         {@link OnArtworkChangeListener}.
+	 */
+	public long getDeliveredArtworkCount() {
+		return mDeliveredArtworkCount.get();
+	}
+
+	/**
+	 * @return Number of artwork updates which weren't delivered because
+	 *         artwork didn't change.
+	 */
+	public long getSuppressedArtworkCount() {
+		return mSuppressedArtworkCount.get();
+	}
+
+	/**
+	 * @return Number of track changes for which artwork was served from
+	 *         artwork cache.
+	 */
+	public long getArtworkCacheHitCount() {
+		return mArtworkCacheHitCount.get();
+	}
+
+	/**
+	 * @return Number of track changes for which artwork wasn't found in
+	 *         artwork cache.
+	 */
+	public long getArtworkCacheMissCount() {
+		return mArtworkCacheMissCount.get();
+	}
+
+	/**
+	 * @return Number of artworks evicted from artwork cache to stay within
+	 *         its size.
+	 */
+	public long getArtworkCacheEvictionCount() {
+		return mArtworkCacheEvictionCount.get();
+	}
+
+	/**
+	 * @return Number of events which were dropped because they were sent by
+	 *         client which isn't current anymore.
+	 */
+	public long getDroppedStaleEventCount() {
+		return mDroppedStaleEventCount.get();
+	}
+
+	/**
+	 * @return Number of events which were replaced by a newer event of the
+	 *         same type before listeners were called.
+	 */
+	public long getConflatedEventCount() {
+		return mConflatedEventCount.get();
+	}
+
+	/**
+	 * @return Time spent on looking up hidden framework members, in
+	 *         nanoseconds. Members are shared by the whole process, so this
+	 *         is the same for all remote controls.
+	 */
+	public long getHiddenApiResolutionTimeNanos() {
+		return HiddenApi.getResolutionTimeNanos();
+	}
+
+	/**
+	 * @return Number of hidden framework members which weren't found on this
+	 *         device. Features which need them are unavailable.
+	 */
+	public int getHiddenApiFailureCount() {
+		return HiddenApi.getFailedCount();
+	}
+
+	public void onArtworkDelivered() {
+		mDeliveredArtworkCount.incrementAndGet();
+	}
+
+	public void onArtworkSuppressed() {
+		mSuppressedArtworkCount.incrementAndGet();
+	}
+
+	public void onArtworkCacheHit() {
+		mArtworkCacheHitCount.incrementAndGet();
+	}
+
+	public void onArtworkCacheMiss() {
+		mArtworkCacheMissCount.incrementAndGet();
+	}
+
+	public void onArtworkCacheEviction() {
+		mArtworkCacheEvictionCount.incrementAndGet();
+	}
+
+	public void onStaleEventDropped() {
+		mDroppedStaleEventCount.incrementAndGet();
+	}
+
+	public void onEventConflated() {
+		mConflatedEventCount.incrementAndGet();
+	}
+}
@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright 2014 Alexander Leontyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.woodblockwithoutco.remotecontroller;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Future which completes once with success or failure, shared by
+ * {@link CommandFuture} and {@link RegistrationFuture}. Can be used from any
+ * thread.
+ */
+abstract class ResultFuture implements Future<Boolean> {
+
+	private static final int PENDING = 0;
+	private static final int SUCCEEDED = 1;
+	private static final int FAILED = 2;
+	private static final int CANCELLED = 3;
+
+	private final CountDownLatch mDone = new CountDownLatch(1);
+	private int mState = PENDING;
+	private List<Runnable> mListeners;
+
+	/**
+	 * Completes future. Called by implementation and shouldn't be used
+	 * explicitly by user.
+	 * 
+	 * @return False if future was already completed.
+	 */
+	public boolean complete(boolean success) {
+		return finish(success ? SUCCEEDED : FAILED);
+	}
+
+	/**
+	 * Adds listener which is run once future is completed, or right away if
+	 * it already is.
+	 * 
+	 * @param executor
+	 *            Executor of listener, null to run it on thread which
+	 *            completes future.
+	 */
+	public void addListener(Runnable listener, Executor executor) {
+		Runnable runnable = executor == null ? listener : new ExecutorRunnable(listener, executor);
+		synchronized(this) {
+			if(mState == PENDING) {
+				if(mListeners == null) mListeners = new ArrayList<Runnable>(1);
+				mListeners.add(runnable);
+				return;
+			}
+		}
+		runnable.run();
+	}
+
+	@Override
+	public boolean cancel(boolean mayInterruptIfRunning) {
+		return finish(CANCELLED);
+	}
+
+	@Override
+	public synchronized boolean isCancelled() {
+		return mState == CANCELLED;
+	}
+
+	@Override
+	public synchronized boolean isDone() {
+		return mState != PENDING;
+	}
+
+	@Override
+	public Boolean get() throws InterruptedException {
+		mDone.await();
+		return getResult();
+	}
+
+	@Override
+	public Boolean get(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException {
+		if(!mDone.await(timeout, unit)) throw new TimeoutException();
+		return getResult();
+	}
+
+	/**
+	 * Called with lock of this future held when it succeeds.
+	 */
+	void onSucceeded() {
+	}
+
+	private synchronized Boolean getResult() {
+		if(mState == CANCELLED) throw new CancellationException();
+		return mState == SUCCEEDED;
+	}
+
+	private boolean finish(int state) {
+		List<Runnable> listeners;
+		synchronized(this) {
+			if(mState != PENDING) return false;
+			mState = state;
+			if(state == SUCCEEDED) onSucceeded();
+			listeners = mListeners;
+			mListeners = null;
+		}
+		mDone.countDown();
+		if(listeners != null) {
+			for(int i = 0; i < listeners.size(); i++) {
+				listeners.get(i).run();
+			}
+		}
+		return true;
+	}
+
+	private static final class ExecutorRunnable implements Runnable {
+
+		private final Runnable mListener;
+		private final Executor mExecutor;
+
+		ExecutorRunnable(Runnable listener, Executor executor) {
+			mListener = listener;
+			mExecutor = executor;
+		}
+
+		@Override
+		public void run() {
+			mExecutor.execute(mListener);
+		}
+	}
+}
@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Copyright 2014 Alexander Leontyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.woodblockwithoutco.remotecontroller.impl;
+
+import com.woodblockwithoutco.remotecontroller.ArtworkHandle;
+
+import android.graphics.Bitmap;
+
+/**
+ * Artwork handle together with its fingerprint. Holds one reference to handle
+ * which is released with {@link #release()}. Shouldn't be used explicitly by
+ * user.
+ */
+public final class Artwork {
+
+	/**
+	 * Null if there's no artwork.
+	 */
+	public final ArtworkHandle handle;
+	public final long fingerprint;
+
+	private Artwork(ArtworkHandle handle, long fingerprint) {
+		this.handle = handle;
+		this.fingerprint = fingerprint;
+	}
+
+	/**
+	 * @param fingerprint
+	 *            Fingerprint of artwork as sent by player.
+	 * @param owned
+	 *            True if bitmap was allocated by library, see
+	 *            {@link ArtworkHandle#ArtworkHandle(Bitmap, boolean)}.
+	 */
+	public static Artwork create(Bitmap bitmap, long fingerprint, boolean owned) {
+		return new Artwork(bitmap != null ? new ArtworkHandle(bitmap, owned) : null, fingerprint);
+	}
+
+	/**
+	 * @return New reference to the same artwork.
+	 */
+	public Artwork acquire() {
+		if(handle != null) handle.acquire();
+		return this;
+	}
+
+	/**
+	 * @return New reference to the same artwork, or null if it was already
+	 *         released.
+	 */
+	public Artwork tryAcquire() {
+		if(handle != null && handle.tryAcquire() == null) return null;
+		return this;
+	}
+
+	public void release() {
+		if(handle != null) handle.release();
+	}
+}
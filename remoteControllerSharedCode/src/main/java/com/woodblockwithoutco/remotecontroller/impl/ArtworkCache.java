@@ -0,0 +1,110 @@
+/*******************************************************************************
+ * Copyright 2014 Alexander Leontyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.woodblockwithoutco.remotecontroller.impl;
+
+import java.util.Locale;
+
+import com.woodblockwithoutco.remotecontroller.RemoteControllerStatistics;
+
+import android.util.LruCache;
+
+/**
+ * Artwork cache keyed by album identity, bounded by total byte count of
+ * cached bitmaps. Cache holds a reference to every cached artwork and releases
+ * it on eviction, so bitmap is recycled only if listeners don't hold it
+ * anymore. Shouldn't be used explicitly by user.
+ */
+public final class ArtworkCache {
+
+	private final RemoteControllerStatistics mStatistics;
+	private LruCache<String, Artwork> mCache;
+
+	public ArtworkCache(RemoteControllerStatistics statistics) {
+		mStatistics = statistics;
+	}
+
+	/**
+	 * @return Key identifying album or null if album is unknown.
+	 */
+	public static String getAlbumKey(String artist, String album, String albumArtist) {
+		if(album == null) return null;
+		String normalizedAlbum = album.trim().toLowerCase(Locale.US);
+		if(normalizedAlbum.length() == 0) return null;
+		// some players use artist instead of album artist
+		String owner = albumArtist != null ? albumArtist : artist;
+		String normalizedOwner = owner != null ? owner.trim().toLowerCase(Locale.US) : "";
+		return normalizedOwner + '\u0000' + normalizedAlbum;
+	}
+
+	/**
+	 * @param maxBytes
+	 *            Maximum total byte count of cached bitmaps, 0 to disable
+	 *            cache. Cached artwork is dropped if size changes.
+	 */
+	public synchronized void setMaxSize(int maxBytes) {
+		LruCache<String, Artwork> old = mCache;
+		int oldMaxBytes = old != null ? old.maxSize() : 0;
+		if(oldMaxBytes == Math.max(maxBytes, 0)) return;
+		mCache = maxBytes > 0 ? new ArtworkLruCache(maxBytes) : null;
+		if(old != null) old.evictAll();
+	}
+
+	/**
+	 * @return New reference to cached artwork of album which must be released
+	 *         by caller, or null.
+	 */
+	public synchronized Artwork get(String albumKey) {
+		LruCache<String, Artwork> cache = mCache;
+		if(cache == null || albumKey == null) return null;
+		Artwork artwork = cache.get(albumKey);
+		if(artwork != null) {
+			mStatistics.onArtworkCacheHit();
+			return artwork.acquire();
+		}
+		mStatistics.onArtworkCacheMiss();
+		return null;
+	}
+
+	/**
+	 * Caches artwork, taking own reference to it.
+	 */
+	public synchronized void put(String albumKey, Artwork artwork) {
+		LruCache<String, Artwork> cache = mCache;
+		if(cache == null || albumKey == null || artwork.handle == null || artwork.handle.isReleased()) return;
+		Artwork cached = cache.get(albumKey);
+		if(cached == null || cached.fingerprint != artwork.fingerprint) {
+			cache.put(albumKey, artwork.acquire());
+		}
+	}
+
+	private class ArtworkLruCache extends LruCache<String, Artwork> {
+
+		public ArtworkLruCache(int maxBytes) {
+			super(maxBytes);
+		}
+
+		@Override
+		protected int sizeOf(String key, Artwork value) {
+			return value.handle.getBitmap().getByteCount();
+		}
+
+		@Override
+		protected void entryRemoved(boolean evicted, String key, Artwork oldValue, Artwork newValue) {
+			if(evicted) mStatistics.onArtworkCacheEviction();
+			oldValue.release();
+		}
+	}
+}
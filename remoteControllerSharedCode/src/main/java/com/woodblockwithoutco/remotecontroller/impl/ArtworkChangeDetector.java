@@ -0,0 +1,63 @@
+/*******************************************************************************
+ * Copyright 2014 Alexander Leontyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.woodblockwithoutco.remotecontroller.impl;
+
+import com.woodblockwithoutco.remotecontroller.RemoteControllerStatistics;
+
+/**
+ * Filters out artwork updates which carry the same image as the last
+ * delivered one. Artwork sent by a different client generation is always
+ * treated as changed. Fingerprints are expected to be computed beforehand off
+ * main thread, so checks here are cheap. Shouldn't be used explicitly by user.
+ */
+public final class ArtworkChangeDetector {
+
+	private final RemoteControllerStatistics mStatistics;
+	private boolean mHasArtwork;
+	private int mGenerationId;
+	private long mFingerprint;
+
+	public ArtworkChangeDetector(RemoteControllerStatistics statistics) {
+		mStatistics = statistics;
+	}
+
+	/**
+	 * @return True if artwork should be delivered to listener.
+	 */
+	public synchronized boolean isChanged(int generationId, Artwork artwork) {
+		if(mHasArtwork && mGenerationId == generationId && mFingerprint == artwork.fingerprint) {
+			mStatistics.onArtworkSuppressed();
+			return false;
+		}
+		markDelivered(generationId, artwork);
+		return true;
+	}
+
+	/**
+	 * Remembers artwork which was delivered without a check, for example from
+	 * cache.
+	 */
+	public synchronized void markDelivered(int generationId, Artwork artwork) {
+		mHasArtwork = true;
+		mGenerationId = generationId;
+		mFingerprint = artwork.fingerprint;
+		mStatistics.onArtworkDelivered();
+	}
+
+	public synchronized void reset() {
+		mHasArtwork = false;
+	}
+}
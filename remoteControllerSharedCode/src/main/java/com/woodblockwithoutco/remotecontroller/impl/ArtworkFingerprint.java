@@ -0,0 +1,75 @@
+/*******************************************************************************
+ * Copyright 2014 Alexander Leontyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.woodblockwithoutco.remotecontroller.impl;
+
+import android.graphics.Bitmap;
+
+/**
+ * Cheap content fingerprint of artwork: dimensions, config and a hash of a
+ * fixed grid of sampled pixels. Two bitmaps with the same fingerprint are
+ * treated as the same artwork. Shouldn't be used explicitly by user.
+ */
+public final class ArtworkFingerprint {
+
+	public static final long NO_ARTWORK = 0;
+
+	private static final int SAMPLES_PER_SIDE = 16;
+
+	private static final long FNV_OFFSET_BASIS = 0xcbf29ce484222325L;
+	private static final long FNV_PRIME = 0x100000001b3L;
+
+	private ArtworkFingerprint() {
+	}
+
+	/**
+	 * Reads at most 256 pixels, so it's fast, but it still shouldn't be called
+	 * on main thread for every update.
+	 * 
+	 * @return Fingerprint of artwork or {@link #NO_ARTWORK} if artwork is null
+	 *         or recycled.
+	 */
+	public static long compute(Bitmap artwork) {
+		if(artwork == null || artwork.isRecycled()) return NO_ARTWORK;
+
+		int width = artwork.getWidth();
+		int height = artwork.getHeight();
+		Bitmap.Config config = artwork.getConfig();
+
+		long hash = FNV_OFFSET_BASIS;
+		hash = mix(hash, width);
+		hash = mix(hash, height);
+		hash = mix(hash, config != null ? config.ordinal() : -1);
+
+		int stepsX = Math.min(width, SAMPLES_PER_SIDE);
+		int stepsY = Math.min(height, SAMPLES_PER_SIDE);
+		for(int y = 0; y < stepsY; y++) {
+			int py = (int) (((long) (2 * y + 1) * height) / (2 * stepsY));
+			for(int x = 0; x < stepsX; x++) {
+				int px = (int) (((long) (2 * x + 1) * width) / (2 * stepsX));
+				hash = mix(hash, artwork.getPixel(px, py));
+			}
+		}
+		return hash == NO_ARTWORK ? 1 : hash;
+	}
+
+	private static long mix(long hash, int value) {
+		for(int i = 0; i < 4; i++) {
+			hash ^= (value >>> (i * 8)) & 0xff;
+			hash *= FNV_PRIME;
+		}
+		return hash;
+	}
+}
@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright 2014 Alexander Leontyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.woodblockwithoutco.remotecontroller.impl;
+
+import java.util.concurrent.atomic.AtomicReference;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+
+/**
+ * Scales artwork down to size requested on registration and converts it to
+ * requested Bitmap.Config, then fingerprints it. All work is done on
+ * {@link ArtworkWorker}. Shouldn't be used explicitly by user.
+ */
+public final class ArtworkProcessor {
+
+	/**
+	 * Size value which means artwork isn't scaled.
+	 */
+	public static final int ORIGINAL_SIZE = 0;
+
+	private volatile int mMaxWidth = ORIGINAL_SIZE;
+	private volatile int mMaxHeight = ORIGINAL_SIZE;
+	private volatile Bitmap.Config mConfig;
+	private final AtomicReference<PendingArtwork> mPending = new AtomicReference<PendingArtwork>();
+	/*
+	 * Players send the same bitmap again with metadata-only updates, its
+	 * processed artwork is reused then.
+	 */
+	private Artwork mLastArtwork;
+	private long mLastFingerprint;
+
+	/**
+	 * Artwork bigger than given size is scaled down keeping its aspect ratio.
+	 * Artwork is never scaled up.
+	 */
+	public void setMaxSize(int width, int height) {
+		mMaxWidth = width;
+		mMaxHeight = height;
+		clearLastArtwork();
+	}
+
+	/**
+	 * @param config
+	 *            Config of delivered artwork, null to keep config chosen by
+	 *            player.
+	 */
+	public void setConfig(Bitmap.Config config) {
+		mConfig = config;
+		clearLastArtwork();
+	}
+
+	/**
+	 * Processes artwork on artwork worker and offers result to queue. Artwork
+	 * which is replaced by a newer one before worker gets to it is never
+	 * processed.
+	 */
+	public void processAsync(Bitmap bitmap, int generationId, final ConflatingQueue queue, final Handler target, final int what) {
+		if(mPending.getAndSet(new PendingArtwork(bitmap, generationId)) != null) return;
+		ArtworkWorker.getHandler().post(new Runnable() {
+			@Override
+			public void run() {
+				PendingArtwork pending = mPending.getAndSet(null);
+				if(pending == null || !queue.isCurrent(pending.generationId)) return;
+				queue.offer(target, what, pending.generationId, 0, process(pending.bitmap));
+			}
+		});
+	}
+
+	/**
+	 * Processes artwork on calling thread, so it shouldn't be called on main
+	 * thread. Fingerprint is taken from bitmap sent by player, so the same
+	 * bitmap sent again is recognized before it is scaled or wrapped.
+	 */
+	public synchronized Artwork process(Bitmap bitmap) {
+		if(bitmap == null || bitmap.isRecycled()) return Artwork.create(null, ArtworkFingerprint.NO_ARTWORK, false);
+		long fingerprint = ArtworkFingerprint.compute(bitmap);
+		if(mLastArtwork != null && mLastFingerprint == fingerprint) {
+			Artwork artwork = mLastArtwork.tryAcquire();
+			if(artwork != null) return artwork;
+		}
+		Bitmap scaled = scale(bitmap);
+		Bitmap result = convert(scaled);
+		if(scaled != bitmap && scaled != result) scaled.recycle();
+		// source bitmap is never recycled as it may still be owned by player
+		Artwork artwork = Artwork.create(result, fingerprint, result != bitmap);
+		if(mLastArtwork != null) mLastArtwork.release();
+		mLastArtwork = artwork.acquire();
+		mLastFingerprint = fingerprint;
+		return artwork;
+	}
+
+	private synchronized void clearLastArtwork() {
+		if(mLastArtwork != null) {
+			mLastArtwork.release();
+			mLastArtwork = null;
+		}
+	}
+
+	private Bitmap scale(Bitmap bitmap) {
+		int maxWidth = mMaxWidth;
+		int maxHeight = mMaxHeight;
+		int width = bitmap.getWidth();
+		int height = bitmap.getHeight();
+		if(maxWidth <= 0 || maxHeight <= 0 || (width <= maxWidth && height <= maxHeight)) {
+			return bitmap;
+		}
+		float scale = Math.min((float) maxWidth / width, (float) maxHeight / height);
+		int scaledWidth = Math.max(1, Math.round(width * scale));
+		int scaledHeight = Math.max(1, Math.round(height * scale));
+		return Bitmap.createScaledBitmap(bitmap, scaledWidth, scaledHeight, true);
+	}
+
+	private Bitmap convert(Bitmap bitmap) {
+		Bitmap.Config config = mConfig;
+		if(config == null || config == bitmap.getConfig()) return bitmap;
+		Bitmap converted = bitmap.copy(config, false);
+		return converted != null ? converted : bitmap;
+	}
+
+	private static final class PendingArtwork {
+
+		final Bitmap bitmap;
+		final int generationId;
+
+		PendingArtwork(Bitmap bitmap, int generationId) {
+			this.bitmap = bitmap;
+			this.generationId = generationId;
+		}
+	}
+}
@@ -0,0 +1,44 @@
+/*******************************************************************************
+ * Copyright 2014 Alexander Leontyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.woodblockwithoutco.remotecontroller.impl;
+
+import android.os.Handler;
+import android.os.HandlerThread;
+import android.os.Process;
+
+/**
+ * Background thread shared by all remote controls in process, which does
+ * artwork processing. It's started on first use and runs until process dies.
+ * Shouldn't be used explicitly by user.
+ */
+public final class ArtworkWorker {
+
+	private static final String THREAD_NAME = "RemoteControllerArtwork";
+
+	private static Handler sHandler;
+
+	private ArtworkWorker() {
+	}
+
+	public static synchronized Handler getHandler() {
+		if(sHandler == null) {
+			HandlerThread thread = new HandlerThread(THREAD_NAME, Process.THREAD_PRIORITY_BACKGROUND);
+			thread.start();
+			sHandler = new Handler(thread.getLooper());
+		}
+		return sHandler;
+	}
+}
@@ -0,0 +1,74 @@
+/*******************************************************************************
+ * Copyright 2014 Alexander Leontyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.woodblockwithoutco.remotecontroller.impl;
+
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.os.Build;
+
+/**
+ * Identity of a client, resolved once when client changes, so it doesn't
+ * have to be looked up on every query. Shouldn't be used explicitly by user.
+ */
+public final class ClientIdentity {
+
+	/**
+	 * Package of client, may be null.
+	 */
+	public final String packageName;
+
+	/**
+	 * UID of client or -1 if it's unknown, which is always the case before
+	 * API 17.
+	 */
+	public final int uid;
+
+	private final Intent mLaunchIntent;
+
+	private ClientIdentity(String packageName, int uid, Intent launchIntent) {
+		this.packageName = packageName;
+		this.uid = uid;
+		mLaunchIntent = launchIntent;
+	}
+
+	/**
+	 * @return Identity of client which owns PendingIntent or null if
+	 *         PendingIntent is null.
+	 */
+	public static ClientIdentity resolve(Context context, PendingIntent clientIntent) {
+		if(clientIntent == null) return null;
+		String packageName;
+		int uid;
+		if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) {
+			packageName = clientIntent.getCreatorPackage();
+			uid = clientIntent.getCreatorUid();
+		} else {
+			packageName = clientIntent.getTargetPackage();
+			uid = -1;
+		}
+		Intent launchIntent = packageName != null ? LaunchIntentCache.getInstance(context).get(packageName) : null;
+		return new ClientIdentity(packageName, uid, launchIntent);
+	}
+
+	/**
+	 * @return New copy of launch intent of client, which can be modified, or
+	 *         null if client can't be launched.
+	 */
+	public Intent getLaunchIntent() {
+		return mLaunchIntent != null ? new Intent(mLaunchIntent) : null;
+	}
+}
@@ -0,0 +1,168 @@
+/*******************************************************************************
+ * Copyright 2014 Alexander Leontyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.woodblockwithoutco.remotecontroller.impl;
+
+import java.util.ArrayList;
+
+import android.os.Handler;
+
+import com.woodblockwithoutco.remotecontroller.CommandFuture;
+import com.woodblockwithoutco.remotecontroller.MediaCommand;
+import com.woodblockwithoutco.remotecontroller.PlaybackSnapshot;
+
+/**
+ * Commands waiting for player's reaction. A command is acknowledged when the
+ * value it changes differs from the one it was sent with: track commands
+ * expect different track, all others expect different play state. Command
+ * which doesn't change anything times out.
+ */
+final class CommandTracker {
+
+	private final ArrayList<Pending> mPending = new ArrayList<Pending>();
+	// EventInterest types expected by pending commands
+	private volatile int mPendingMask = EventInterest.NONE;
+	private volatile Handler mHandler;
+
+	static int getAcknowledgingEvent(MediaCommand command) {
+		switch(command) {
+		case NEXT:
+		case PREVIOUS:
+			return EventInterest.METADATA;
+		default:
+			return EventInterest.PLAYBACK_STATE;
+		}
+	}
+
+	/**
+	 * Sets handler on which timeouts of commands are run.
+	 */
+	public void setHandler(Handler handler) {
+		mHandler = handler;
+	}
+
+	public boolean isPending(int type) {
+		return (mPendingMask & type) != 0;
+	}
+
+	/**
+	 * @param sentWith
+	 *            Snapshot at the moment command is sent, or null if value
+	 *            changed by command isn't known yet. Then first event of
+	 *            expected type acknowledges command.
+	 * @param timeout
+	 *            Posted to handler, removed when command is acknowledged.
+	 */
+	public void add(CommandFuture future, PlaybackSnapshot sentWith, Runnable timeout, long timeoutMs) {
+		synchronized(this) {
+			mPending.add(new Pending(future, sentWith, timeout));
+			mPendingMask |= getAcknowledgingEvent(future.getCommand());
+		}
+		Handler handler = mHandler;
+		if(handler != null) handler.postDelayed(timeout, timeoutMs);
+	}
+
+	/**
+	 * @return True if types expected by pending commands changed.
+	 */
+	public boolean remove(CommandFuture future) {
+		Pending removed = null;
+		boolean changed;
+		synchronized(this) {
+			for(int i = 0; i < mPending.size(); i++) {
+				if(mPending.get(i).future == future) {
+					removed = mPending.remove(i);
+					break;
+				}
+			}
+			changed = updatePendingMask();
+		}
+		if(removed != null) removeTimeout(removed);
+		return changed;
+	}
+
+	/**
+	 * Acknowledges commands waiting for event of given type whose value
+	 * changed, in order they were sent.
+	 * 
+	 * @param snapshot
+	 *            Snapshot after event was dispatched.
+	 * @return True if types expected by pending commands changed.
+	 */
+	public boolean onEvent(int type, PlaybackSnapshot snapshot) {
+		if(!isPending(type)) return false;
+		ArrayList<Pending> acknowledged = new ArrayList<Pending>();
+		boolean changed;
+		synchronized(this) {
+			for(int i = 0; i < mPending.size(); i++) {
+				Pending pending = mPending.get(i);
+				if(pending.future.isDone() || ((getAcknowledgingEvent(pending.future.getCommand()) & type) != 0 && isChanged(type, pending.sentWith, snapshot))) {
+					acknowledged.add(pending);
+					mPending.remove(i--);
+				}
+			}
+			changed = updatePendingMask();
+		}
+		// futures are completed outside of lock, they run listeners
+		for(int i = 0; i < acknowledged.size(); i++) {
+			Pending pending = acknowledged.get(i);
+			removeTimeout(pending);
+			pending.future.complete(true);
+		}
+		return changed;
+	}
+
+	static boolean isChanged(int type, PlaybackSnapshot before, PlaybackSnapshot after) {
+		if(before == null) return true;
+		if(type == EventInterest.METADATA) {
+			return !equal(before.getArtist(), after.getArtist()) || !equal(before.getTitle(), after.getTitle()) || !equal(before.getAlbum(), after.getAlbum())
+					|| before.getDuration() != after.getDuration();
+		}
+		return before.getPlayState() != after.getPlayState();
+	}
+
+	private static boolean equal(String a, String b) {
+		return a == null ? b == null : a.equals(b);
+	}
+
+	private void removeTimeout(Pending pending) {
+		Handler handler = mHandler;
+		if(handler != null) handler.removeCallbacks(pending.timeout);
+	}
+
+	private boolean updatePendingMask() {
+		int mask = EventInterest.NONE;
+		for(int i = 0; i < mPending.size(); i++) {
+			CommandFuture future = mPending.get(i).future;
+			if(!future.isDone()) mask |= getAcknowledgingEvent(future.getCommand());
+		}
+		boolean changed = mask != mPendingMask;
+		mPendingMask = mask;
+		return changed;
+	}
+
+	private static final class Pending {
+
+		final CommandFuture future;
+		final PlaybackSnapshot sentWith;
+		final Runnable timeout;
+
+		Pending(CommandFuture future, PlaybackSnapshot sentWith, Runnable timeout) {
+			this.future = future;
+			this.sentWith = sentWith;
+			this.timeout = timeout;
+		}
+	}
+}
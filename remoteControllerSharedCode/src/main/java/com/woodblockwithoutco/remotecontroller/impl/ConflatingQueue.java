@@ -0,0 +1,133 @@
+/*******************************************************************************
+ * Copyright 2014 Alexander Leontyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.woodblockwithoutco.remotecontroller.impl;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.woodblockwithoutco.remotecontroller.RemoteControllerStatistics;
+
+import android.os.Handler;
+
+/**
+ * Pending client events with one slot per event type. A newer event replaces
+ * the pending one of the same type, and a message is sent to handler only
+ * when the slot was empty, so handler queue holds at most one message per
+ * type and listeners only see the freshest value. Also keeps generation of
+ * current client, so events of previous clients are dropped before they are
+ * queued. Shouldn't be used explicitly by user.
+ */
+public final class ConflatingQueue {
+
+	public static final class Event {
+
+		public final int generationId;
+		public final int arg;
+		public final Object obj;
+
+		Event(int generationId, int arg, Object obj) {
+			this.generationId = generationId;
+			this.arg = arg;
+			this.obj = obj;
+		}
+	}
+
+	private final int mFirstWhat;
+	private final AtomicReferenceArray<Event> mSlots;
+	private final AtomicInteger mGenerationId = new AtomicInteger();
+	private final RemoteControllerStatistics mStatistics;
+
+	/**
+	 * @param firstWhat
+	 *            Message code of the first event type, event types must have
+	 *            consecutive codes.
+	 * @param count
+	 *            Number of event types.
+	 */
+	public ConflatingQueue(int firstWhat, int count, RemoteControllerStatistics statistics) {
+		mFirstWhat = firstWhat;
+		mSlots = new AtomicReferenceArray<Event>(count);
+		mStatistics = statistics;
+	}
+
+	/**
+	 * Called on binder thread when client changes, before generation message
+	 * is sent. Pending events of previous client are dropped.
+	 */
+	public void setGenerationId(int generationId) {
+		mGenerationId.set(generationId);
+		for(int i = 0; i < mSlots.length(); i++) {
+			Event dropped = mSlots.getAndSet(i, null);
+			if(dropped != null) {
+				release(dropped);
+				mStatistics.onStaleEventDropped();
+			}
+		}
+	}
+
+	/**
+	 * @return True if event of given generation should be handled, otherwise
+	 *         it's counted as dropped.
+	 */
+	public boolean isCurrent(int generationId) {
+		if(generationId == mGenerationId.get()) return true;
+		mStatistics.onStaleEventDropped();
+		return false;
+	}
+
+	public void offer(Handler handler, int what, int generationId, int arg, Object obj) {
+		Event previous = mSlots.getAndSet(what - mFirstWhat, new Event(generationId, arg, obj));
+		if(previous == null) {
+			handler.sendEmptyMessage(what);
+		} else {
+			release(previous);
+			mStatistics.onEventConflated();
+		}
+	}
+
+	/**
+	 * Called by handler for message of given type.
+	 * 
+	 * @param handlerGenerationId
+	 *            Generation of client last seen by handler.
+	 * @return Pending event of handler's client or null.
+	 */
+	public Event take(int what, int handlerGenerationId) {
+		int index = what - mFirstWhat;
+		Event event = mSlots.getAndSet(index, null);
+		if(event == null || event.generationId == handlerGenerationId) return event;
+		if(event.generationId == mGenerationId.get()) {
+			/*
+			 * Event of a client handler doesn't know yet. Its own message was
+			 * sent after generation message, so it's put back for it unless a
+			 * newer event took the slot meanwhile.
+			 */
+			if(!mSlots.compareAndSet(index, null, event)) release(event);
+		} else {
+			release(event);
+			mStatistics.onStaleEventDropped();
+		}
+		return null;
+	}
+
+	/*
+	 * Pending artwork holds a reference which must be released when it's
+	 * never delivered.
+	 */
+	private static void release(Event event) {
+		if(event.obj instanceof Artwork) ((Artwork) event.obj).release();
+	}
+}
@@ -0,0 +1,44 @@
+/*******************************************************************************
+ * Copyright 2014 Alexander Leontyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.woodblockwithoutco.remotecontroller.impl;
+
+/**
+ * Mask of event types which have a listener. It's published by display and
+ * read by event producers on any thread, so they can skip extracting and
+ * dispatching events nobody listens to. Shouldn't be used explicitly by user.
+ */
+public final class EventInterest {
+
+	public static final int NONE = 0;
+	public static final int METADATA = 1 << 0;
+	public static final int ARTWORK = 1 << 1;
+	public static final int PLAYBACK_STATE = 1 << 2;
+	public static final int FEATURES = 1 << 3;
+
+	private volatile int mMask = NONE;
+
+	public int getMask() {
+		return mMask;
+	}
+
+	public boolean contains(int events) {
+		return (mMask & events) != 0;
+	}
+
+	public synchronized void set(int events, boolean interested) {
+		mMask = interested ? (mMask | events) : (mMask & ~events);
+	}
+}
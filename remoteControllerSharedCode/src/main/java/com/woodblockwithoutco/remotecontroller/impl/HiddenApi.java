@@ -0,0 +1,243 @@
+/*******************************************************************************
+ * Copyright 2014 Alexander Leontyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.woodblockwithoutco.remotecontroller.impl;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import android.util.Log;
+
+/**
+ * Process wide registry of hidden framework members used by remote controls.
+ * Handles are meant to be kept in static final fields, each member is looked
+ * up on first use only and the result, including failure, is cached for the
+ * lifetime of the process. Missing members are reported as unavailable rather
+ * than thrown, so callers can turn off the feature which needs them.
+ * Shouldn't be used explicitly by user.
+ */
+public final class HiddenApi {
+
+	private static final String TAG = "HiddenApi";
+
+	private static final AtomicLong sResolutionTimeNanos = new AtomicLong();
+	private static final AtomicInteger sResolvedCount = new AtomicInteger();
+	private static final AtomicInteger sFailedCount = new AtomicInteger();
+
+	private HiddenApi() {
+	}
+
+	/**
+	 * Declares hidden method. Nothing is looked up until the handle is used.
+	 * 
+	 * @param parameterTypes
+	 *            Either {@link Class} or fully qualified class name, the
+	 *            latter for hidden types which aren't available at compile
+	 *            time.
+	 */
+	public static MethodRef method(Class<?> owner, String name, Object... parameterTypes) {
+		return new MethodRef(owner, name, parameterTypes);
+	}
+
+	/**
+	 * Declares hidden field. Nothing is looked up until the handle is used.
+	 */
+	public static FieldRef field(Class<?> owner, String name) {
+		return new FieldRef(owner, name);
+	}
+
+	/**
+	 * @return Total time spent on looking up hidden members in this process,
+	 *         in nanoseconds.
+	 */
+	public static long getResolutionTimeNanos() {
+		return sResolutionTimeNanos.get();
+	}
+
+	/**
+	 * @return Number of hidden members which were found in this process.
+	 */
+	public static int getResolvedCount() {
+		return sResolvedCount.get();
+	}
+
+	/**
+	 * @return Number of hidden members which weren't found in this process.
+	 */
+	public static int getFailedCount() {
+		return sFailedCount.get();
+	}
+
+	private static void onResolved(long startNanos, boolean success) {
+		sResolutionTimeNanos.addAndGet(System.nanoTime() - startNanos);
+		if(success) {
+			sResolvedCount.incrementAndGet();
+		} else {
+			sFailedCount.incrementAndGet();
+		}
+	}
+
+	/**
+	 * Lazily resolved handle of hidden method.
+	 */
+	public static final class MethodRef {
+
+		private final Class<?> mOwner;
+		private final String mName;
+		private final Object[] mParameterTypes;
+		private volatile boolean mResolved;
+		private Method mMethod;
+
+		private MethodRef(Class<?> owner, String name, Object[] parameterTypes) {
+			mOwner = owner;
+			mName = name;
+			mParameterTypes = parameterTypes;
+		}
+
+		/**
+		 * @return Method, or null if it doesn't exist on this device.
+		 */
+		public Method get() {
+			if(!mResolved) {
+				synchronized(this) {
+					if(!mResolved) {
+						mMethod = resolve();
+						mResolved = true;
+					}
+				}
+			}
+			return mMethod;
+		}
+
+		public boolean isAvailable() {
+			return get() != null;
+		}
+
+		/**
+		 * Invokes method ignoring its result.
+		 * 
+		 * @return true if method exists and returned normally.
+		 */
+		public boolean invoke(Object receiver, Object... args) {
+			Method method = get();
+			if(method == null) return false;
+			try {
+				method.invoke(receiver, args);
+				return true;
+			} catch (IllegalArgumentException e) {
+				Log.e(TAG, "Failed to invoke " + mName, e);
+			} catch (IllegalAccessException e) {
+				Log.e(TAG, "Failed to invoke " + mName, e);
+			} catch (InvocationTargetException e) {
+				Log.e(TAG, "Failed to invoke " + mName, e.getCause());
+			}
+			return false;
+		}
+
+		private Method resolve() {
+			long start = System.nanoTime();
+			Method method = null;
+			try {
+				Class<?>[] types = new Class<?>[mParameterTypes.length];
+				for(int i = 0; i < types.length; i++) {
+					Object type = mParameterTypes[i];
+					types[i] = type instanceof Class ? (Class<?>) type : Class.forName((String) type);
+				}
+				method = mOwner.getDeclaredMethod(mName, types);
+				method.setAccessible(true);
+			} catch (ClassNotFoundException e) {
+				Log.w(TAG, "Hidden method " + mName + " is unavailable", e);
+			} catch (NoSuchMethodException e) {
+				Log.w(TAG, "Hidden method " + mName + " is unavailable", e);
+			} catch (SecurityException e) {
+				Log.w(TAG, "Hidden method " + mName + " is unavailable", e);
+				method = null;
+			}
+			onResolved(start, method != null);
+			return method;
+		}
+	}
+
+	/**
+	 * Lazily resolved handle of hidden field.
+	 */
+	public static final class FieldRef {
+
+		private final Class<?> mOwner;
+		private final String mName;
+		private volatile boolean mResolved;
+		private Field mField;
+
+		private FieldRef(Class<?> owner, String name) {
+			mOwner = owner;
+			mName = name;
+		}
+
+		/**
+		 * @return Field, or null if it doesn't exist on this device.
+		 */
+		public Field get() {
+			if(!mResolved) {
+				synchronized(this) {
+					if(!mResolved) {
+						mField = resolve();
+						mResolved = true;
+					}
+				}
+			}
+			return mField;
+		}
+
+		public boolean isAvailable() {
+			return get() != null;
+		}
+
+		/**
+		 * @return Value of field, or null if field doesn't exist on this
+		 *         device or can't be read.
+		 */
+		public Object getValue(Object receiver) {
+			Field field = get();
+			if(field == null) return null;
+			try {
+				return field.get(receiver);
+			} catch (IllegalArgumentException e) {
+				Log.e(TAG, "Failed to read " + mName, e);
+			} catch (IllegalAccessException e) {
+				Log.e(TAG, "Failed to read " + mName, e);
+			}
+			return null;
+		}
+
+		private Field resolve() {
+			long start = System.nanoTime();
+			Field field = null;
+			try {
+				field = mOwner.getDeclaredField(mName);
+				field.setAccessible(true);
+			} catch (NoSuchFieldException e) {
+				Log.w(TAG, "Hidden field " + mName + " is unavailable", e);
+			} catch (SecurityException e) {
+				Log.w(TAG, "Hidden field " + mName + " is unavailable", e);
+				field = null;
+			}
+			onResolved(start, field != null);
+			return field;
+		}
+	}
+}
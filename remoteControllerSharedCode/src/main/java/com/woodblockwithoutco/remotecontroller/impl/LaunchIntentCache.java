@@ -0,0 +1,71 @@
+/*******************************************************************************
+ * Copyright 2014 Alexander Leontyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.woodblockwithoutco.remotecontroller.impl;
+
+import java.util.HashMap;
+
+import android.content.Context;
+import android.content.Intent;
+
+/**
+ * Launch intents of packages, looked up once per package and forgotten when
+ * package is changed or removed. One instance is shared by the whole
+ * process. Shouldn't be used explicitly by user.
+ */
+public final class LaunchIntentCache {
+
+	private static LaunchIntentCache sInstance;
+
+	private final Context mContext;
+	// null value means package has no launch intent
+	private final HashMap<String, Intent> mIntents = new HashMap<String, Intent>();
+
+	private final PackageChangeMonitor.Listener mPackageListener = new PackageChangeMonitor.Listener() {
+		@Override
+		public void onPackageChanged(String packageName) {
+			synchronized(LaunchIntentCache.this) {
+				if(packageName != null) {
+					mIntents.remove(packageName);
+				} else {
+					mIntents.clear();
+				}
+			}
+		}
+	};
+
+	public static synchronized LaunchIntentCache getInstance(Context context) {
+		if(sInstance == null) {
+			sInstance = new LaunchIntentCache(context.getApplicationContext());
+		}
+		return sInstance;
+	}
+
+	private LaunchIntentCache(Context context) {
+		mContext = context;
+		PackageChangeMonitor.getInstance(mContext).addListener(mPackageListener);
+	}
+
+	/**
+	 * @return Cached launch intent, which must not be modified, or null if
+	 *         package can't be launched.
+	 */
+	public synchronized Intent get(String packageName) {
+		if(mIntents.containsKey(packageName)) return mIntents.get(packageName);
+		Intent intent = mContext.getPackageManager().getLaunchIntentForPackage(packageName);
+		mIntents.put(packageName, intent);
+		return intent;
+	}
+}
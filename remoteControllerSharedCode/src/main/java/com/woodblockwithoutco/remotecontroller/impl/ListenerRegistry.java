@@ -0,0 +1,661 @@
+/*******************************************************************************
+ * Copyright 2014 Alexander Leontyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.woodblockwithoutco.remotecontroller.impl;
+
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.woodblockwithoutco.remotecontroller.ArtworkHandle;
+import com.woodblockwithoutco.remotecontroller.CommandFuture;
+import com.woodblockwithoutco.remotecontroller.MediaCommand;
+import com.woodblockwithoutco.remotecontroller.OnArtworkChangeListener;
+import com.woodblockwithoutco.remotecontroller.OnArtworkHandleChangeListener;
+import com.woodblockwithoutco.remotecontroller.OnMetadataChangeListener;
+import com.woodblockwithoutco.remotecontroller.OnPlaybackStateChangeListener;
+import com.woodblockwithoutco.remotecontroller.OnRemoteControlFeaturesChangeListener;
+import com.woodblockwithoutco.remotecontroller.OnTrackChangeListener;
+import com.woodblockwithoutco.remotecontroller.PlayState;
+import com.woodblockwithoutco.remotecontroller.PlaybackSnapshot;
+import com.woodblockwithoutco.remotecontroller.RemoteControlFeature;
+
+import android.app.PendingIntent;
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * Listeners of a display, each called on its own Executor. Listeners without
+ * one use default executor of registry, or are called directly on dispatching
+ * thread if there's no default executor. Listeners can be added and removed
+ * from any thread, dispatch methods must be called from a single thread.
+ * Every dispatched event is also published in {@link PlaybackSnapshot}.
+ * Shouldn't be used explicitly by user.
+ */
+public final class ListenerRegistry {
+
+	private static final Subscription[] EMPTY = new Subscription[0];
+
+	private static final int REPLAY_METADATA = 0;
+	private static final int REPLAY_ARTWORK = 1;
+	private static final int REPLAY_ARTWORK_HANDLE = 2;
+	private static final int REPLAY_PLAYBACK_STATE = 3;
+	private static final int REPLAY_FEATURES = 4;
+	private static final int REPLAY_TRACK_CHANGE = 5;
+
+	private final EventInterest mEventInterest = new EventInterest();
+	private final Executor mDefaultExecutor;
+
+	/*
+	 * Copy-on-write arrays, so dispatching never takes a lock and doesn't
+	 * allocate for listeners called directly.
+	 */
+	private volatile Subscription[] mMetadataListeners = EMPTY;
+	private volatile Subscription[] mArtworkListeners = EMPTY;
+	private volatile Subscription[] mArtworkHandleListeners = EMPTY;
+	private volatile Subscription[] mPlaybackStateListeners = EMPTY;
+	private volatile Subscription[] mFeaturesListeners = EMPTY;
+	private volatile Subscription[] mTrackChangeListeners = EMPTY;
+
+	/*
+	 * Listeners set by single listener setters, they are replaced on next
+	 * call.
+	 */
+	private OnMetadataChangeListener mMetadataListener;
+	private OnArtworkChangeListener mArtworkListener;
+	private OnArtworkHandleChangeListener mArtworkHandleListener;
+	private OnPlaybackStateChangeListener mPlaybackStateListener;
+	private OnRemoteControlFeaturesChangeListener mFeaturesListener;
+	private OnTrackChangeListener mTrackChangeListener;
+
+	/*
+	 * Reference to current artwork, which keeps it valid for listeners until
+	 * it is replaced.
+	 */
+	private ArtworkHandle mCurrentArtwork;
+
+	private final TrackChangeCoalescer mTrackChanges = new TrackChangeCoalescer(this);
+	private final CommandTracker mCommands = new CommandTracker();
+
+	/*
+	 * Written only by dispatching thread, each update is a single reference
+	 * swap. Snapshot wants every event type once it was requested.
+	 */
+	private final AtomicReference<PlaybackSnapshot> mSnapshot = new AtomicReference<PlaybackSnapshot>(PlaybackSnapshot.EMPTY);
+	private volatile boolean mSnapshotWanted;
+
+	/*
+	 * EventInterest types delivered for current client, so only values which
+	 * were really delivered are replayed. Written only on dispatching thread.
+	 */
+	private volatile int mDeliveredMask;
+	private volatile Handler mDispatchHandler;
+
+	public ListenerRegistry() {
+		this(null);
+	}
+
+	/**
+	 * @param defaultExecutor
+	 *            Executor of listeners which didn't specify one, null to call
+	 *            them directly on dispatching thread.
+	 */
+	public ListenerRegistry(Executor defaultExecutor) {
+		mDefaultExecutor = defaultExecutor;
+	}
+
+	/**
+	 * Sets looper of dispatching thread. Newly set listeners get last
+	 * delivered values replayed on it, track changes are merged and command
+	 * timeouts run on it.
+	 */
+	public void setDispatchLooper(Looper looper) {
+		mDispatchHandler = new Handler(looper);
+		mTrackChanges.setHandler(mDispatchHandler);
+		mCommands.setHandler(mDispatchHandler);
+	}
+
+	public EventInterest getEventInterest() {
+		return mEventInterest;
+	}
+
+	/**
+	 * @return Latest snapshot. Events nobody listens to aren't produced, so
+	 *         the first call makes display produce all of them from then on.
+	 */
+	public PlaybackSnapshot getSnapshot() {
+		if(!mSnapshotWanted) {
+			synchronized(this) {
+				mSnapshotWanted = true;
+				updateEventInterest();
+			}
+		}
+		return mSnapshot.get();
+	}
+
+	public synchronized void setMetadataChangeListener(OnMetadataChangeListener l) {
+		mMetadataListeners = add(remove(mMetadataListeners, mMetadataListener), l, mDefaultExecutor);
+		mMetadataListener = l;
+		updateEventInterest();
+		replay(REPLAY_METADATA, l);
+	}
+
+	public synchronized void addMetadataChangeListener(OnMetadataChangeListener l, Executor executor) {
+		mMetadataListeners = add(mMetadataListeners, l, executor != null ? executor : mDefaultExecutor);
+		updateEventInterest();
+		replay(REPLAY_METADATA, l);
+	}
+
+	public synchronized void removeMetadataChangeListener(OnMetadataChangeListener l) {
+		mMetadataListeners = remove(mMetadataListeners, l);
+		if(mMetadataListener == l) mMetadataListener = null;
+		updateEventInterest();
+	}
+
+	public synchronized void setArtworkChangeListener(OnArtworkChangeListener l) {
+		mArtworkListeners = add(remove(mArtworkListeners, mArtworkListener), l, mDefaultExecutor);
+		mArtworkListener = l;
+		updateEventInterest();
+		replay(REPLAY_ARTWORK, l);
+	}
+
+	public synchronized void addArtworkChangeListener(OnArtworkChangeListener l, Executor executor) {
+		mArtworkListeners = add(mArtworkListeners, l, executor != null ? executor : mDefaultExecutor);
+		updateEventInterest();
+		replay(REPLAY_ARTWORK, l);
+	}
+
+	public synchronized void removeArtworkChangeListener(OnArtworkChangeListener l) {
+		mArtworkListeners = remove(mArtworkListeners, l);
+		if(mArtworkListener == l) mArtworkListener = null;
+		updateEventInterest();
+	}
+
+	public synchronized void setArtworkHandleChangeListener(OnArtworkHandleChangeListener l) {
+		mArtworkHandleListeners = add(remove(mArtworkHandleListeners, mArtworkHandleListener), l, mDefaultExecutor);
+		mArtworkHandleListener = l;
+		updateEventInterest();
+		replay(REPLAY_ARTWORK_HANDLE, l);
+	}
+
+	public synchronized void addArtworkHandleChangeListener(OnArtworkHandleChangeListener l, Executor executor) {
+		mArtworkHandleListeners = add(mArtworkHandleListeners, l, executor != null ? executor : mDefaultExecutor);
+		updateEventInterest();
+		replay(REPLAY_ARTWORK_HANDLE, l);
+	}
+
+	public synchronized void removeArtworkHandleChangeListener(OnArtworkHandleChangeListener l) {
+		mArtworkHandleListeners = remove(mArtworkHandleListeners, l);
+		if(mArtworkHandleListener == l) mArtworkHandleListener = null;
+		updateEventInterest();
+	}
+
+	public synchronized void setPlaybackStateChangeListener(OnPlaybackStateChangeListener l) {
+		mPlaybackStateListeners = add(remove(mPlaybackStateListeners, mPlaybackStateListener), l, mDefaultExecutor);
+		mPlaybackStateListener = l;
+		updateEventInterest();
+		replay(REPLAY_PLAYBACK_STATE, l);
+	}
+
+	public synchronized void addPlaybackStateChangeListener(OnPlaybackStateChangeListener l, Executor executor) {
+		mPlaybackStateListeners = add(mPlaybackStateListeners, l, executor != null ? executor : mDefaultExecutor);
+		updateEventInterest();
+		replay(REPLAY_PLAYBACK_STATE, l);
+	}
+
+	public synchronized void removePlaybackStateChangeListener(OnPlaybackStateChangeListener l) {
+		mPlaybackStateListeners = remove(mPlaybackStateListeners, l);
+		if(mPlaybackStateListener == l) mPlaybackStateListener = null;
+		updateEventInterest();
+	}
+
+	public synchronized void setRemoteControlFeaturesChangeListener(OnRemoteControlFeaturesChangeListener l) {
+		mFeaturesListeners = add(remove(mFeaturesListeners, mFeaturesListener), l, mDefaultExecutor);
+		mFeaturesListener = l;
+		updateEventInterest();
+		replay(REPLAY_FEATURES, l);
+	}
+
+	public synchronized void addRemoteControlFeaturesChangeListener(OnRemoteControlFeaturesChangeListener l, Executor executor) {
+		mFeaturesListeners = add(mFeaturesListeners, l, executor != null ? executor : mDefaultExecutor);
+		updateEventInterest();
+		replay(REPLAY_FEATURES, l);
+	}
+
+	public synchronized void removeRemoteControlFeaturesChangeListener(OnRemoteControlFeaturesChangeListener l) {
+		mFeaturesListeners = remove(mFeaturesListeners, l);
+		if(mFeaturesListener == l) mFeaturesListener = null;
+		updateEventInterest();
+	}
+
+	public synchronized void setTrackChangeListener(OnTrackChangeListener l) {
+		mTrackChangeListeners = add(remove(mTrackChangeListeners, mTrackChangeListener), l, mDefaultExecutor);
+		mTrackChangeListener = l;
+		updateEventInterest();
+		replay(REPLAY_TRACK_CHANGE, l);
+	}
+
+	public synchronized void addTrackChangeListener(OnTrackChangeListener l, Executor executor) {
+		mTrackChangeListeners = add(mTrackChangeListeners, l, executor != null ? executor : mDefaultExecutor);
+		updateEventInterest();
+		replay(REPLAY_TRACK_CHANGE, l);
+	}
+
+	public synchronized void removeTrackChangeListener(OnTrackChangeListener l) {
+		mTrackChangeListeners = remove(mTrackChangeListeners, l);
+		if(mTrackChangeListener == l) mTrackChangeListener = null;
+		updateEventInterest();
+	}
+
+	/**
+	 * @param windowMs
+	 *            Time in milliseconds during which updates are merged into
+	 *            a single track change.
+	 */
+	public void setTrackChangeWindow(int windowMs) {
+		mTrackChanges.setWindow(windowMs);
+	}
+
+	/**
+	 * Starts tracking command which is about to be sent, see
+	 * {@link CommandTracker}.
+	 * 
+	 * @param timeoutMs
+	 *            Time after which command fails if player didn't react.
+	 */
+	public CommandFuture trackCommand(MediaCommand command, long timeoutMs) {
+		final CommandFuture future = new CommandFuture(command);
+		int type = CommandTracker.getAcknowledgingEvent(command);
+		// value changed by command is known only if its events are already delivered
+		PlaybackSnapshot sentWith = mEventInterest.contains(type) && (mDeliveredMask & type) != 0 ? mSnapshot.get() : null;
+		Runnable timeout = new Runnable() {
+			@Override
+			public void run() {
+				future.complete(false);
+				untrackCommand(future);
+			}
+		};
+		synchronized(this) {
+			mCommands.add(future, sentWith, timeout, timeoutMs);
+			updateEventInterest();
+		}
+		return future;
+	}
+
+	public void untrackCommand(CommandFuture future) {
+		if(mCommands.remove(future)) {
+			synchronized(this) {
+				updateEventInterest();
+			}
+		}
+	}
+
+	/*
+	 * Track change listeners need every event type except features. Pending
+	 * commands need events which acknowledge them.
+	 */
+	public boolean hasMetadataListeners() {
+		return mMetadataListeners.length > 0 || hasTrackChangeListeners() || mSnapshotWanted || mCommands.isPending(EventInterest.METADATA);
+	}
+
+	public boolean hasArtworkListeners() {
+		return mArtworkListeners.length > 0 || mArtworkHandleListeners.length > 0 || hasTrackChangeListeners() || mSnapshotWanted;
+	}
+
+	public boolean hasPlaybackStateListeners() {
+		return mPlaybackStateListeners.length > 0 || hasTrackChangeListeners() || mSnapshotWanted || mCommands.isPending(EventInterest.PLAYBACK_STATE);
+	}
+
+	public boolean hasTrackChangeListeners() {
+		return mTrackChangeListeners.length > 0;
+	}
+
+	public boolean hasFeaturesListeners() {
+		return mFeaturesListeners.length > 0 || mSnapshotWanted;
+	}
+
+	/**
+	 * Starts a new snapshot and drops track change which is still being
+	 * merged, they belong to previous client.
+	 * 
+	 * @param clientIntent
+	 *            PendingIntent of new client, may be null.
+	 */
+	public void dispatchClientChanged(PendingIntent clientIntent) {
+		mSnapshot.set(mSnapshot.get().withClient(clientIntent));
+		mDeliveredMask = EventInterest.NONE;
+		mTrackChanges.reset();
+	}
+
+	public void dispatchMetadataChanged(String artist, String title, String album, String albumArtist, long duration) {
+		mSnapshot.set(mSnapshot.get().withMetadata(artist, title, album, albumArtist, duration));
+		mDeliveredMask |= EventInterest.METADATA;
+		if(hasTrackChangeListeners()) {
+			mTrackChanges.onMetadataChanged(artist, title, album, albumArtist, duration);
+		}
+		notifyMetadataChanged(mMetadataListeners, artist, title, album, albumArtist, duration);
+		acknowledgeCommands(EventInterest.METADATA);
+	}
+
+	/**
+	 * @param artwork
+	 *            New artwork or null, registry takes its own reference.
+	 */
+	public void dispatchArtworkChanged(ArtworkHandle artwork) {
+		ArtworkHandle previous = mCurrentArtwork;
+		mCurrentArtwork = artwork != null ? artwork.acquire() : null;
+		// snapshot doesn't own a reference, readers acquire it if still alive
+		mSnapshot.set(mSnapshot.get().withArtwork(artwork));
+		mDeliveredMask |= EventInterest.ARTWORK;
+
+		notifyArtworkChanged(mArtworkListeners, artwork);
+		notifyArtworkHandleChanged(mArtworkHandleListeners, artwork);
+
+		if(previous != null) previous.release();
+
+		if(hasTrackChangeListeners()) {
+			mTrackChanges.onArtworkChanged(artwork);
+		}
+	}
+
+	/**
+	 * @param position
+	 *            Position published together with state, may be null.
+	 */
+	public void dispatchPlaybackStateChanged(PlayState state, PositionClock.Sample position) {
+		PlaybackSnapshot snapshot = mSnapshot.get().withPlayState(state);
+		if(position != null) {
+			snapshot = snapshot.withPosition(position.positionMs, position.timestampMs, position.speed);
+		}
+		mSnapshot.set(snapshot);
+		mDeliveredMask |= EventInterest.PLAYBACK_STATE;
+		if(hasTrackChangeListeners()) {
+			mTrackChanges.onPlaybackStateChanged(state);
+		}
+		notifyPlaybackStateChanged(mPlaybackStateListeners, state);
+		acknowledgeCommands(EventInterest.PLAYBACK_STATE);
+	}
+
+	/**
+	 * Publishes position which changed without a state change.
+	 */
+	public void dispatchPositionChanged(PositionClock.Sample position) {
+		mSnapshot.set(mSnapshot.get().withPosition(position.positionMs, position.timestampMs, position.speed));
+	}
+
+	public void dispatchFeaturesChanged(List<RemoteControlFeature> features) {
+		mSnapshot.set(mSnapshot.get().withFeatures(features));
+		mDeliveredMask |= EventInterest.FEATURES;
+		notifyFeaturesChanged(mFeaturesListeners, features);
+	}
+
+	/*
+	 * Called by TrackChangeCoalescer when its window is closed.
+	 */
+	void dispatchTrackChanged(String artist, String title, String album, String albumArtist, long duration, ArtworkHandle artwork, PlayState state) {
+		notifyTrackChanged(mTrackChangeListeners, artist, title, album, albumArtist, duration, artwork, state);
+	}
+
+	private void acknowledgeCommands(int type) {
+		if(mCommands.onEvent(type, mSnapshot.get())) {
+			synchronized(this) {
+				updateEventInterest();
+			}
+		}
+	}
+
+	/*
+	 * Replays last delivered value of current client to a newly set
+	 * listener. It's done on dispatching thread, so it's never delivered
+	 * after a newer value; listener may get latest value twice.
+	 */
+	private void replay(final int type, final Object listener) {
+		Handler handler = mDispatchHandler;
+		if(handler == null || listener == null) return;
+		handler.post(new Runnable() {
+			@Override
+			public void run() {
+				replayNow(type, listener);
+			}
+		});
+	}
+
+	private void replayNow(int type, Object listener) {
+		PlaybackSnapshot snapshot = mSnapshot.get();
+		Subscription[] subscription;
+		switch(type) {
+		case REPLAY_METADATA:
+			subscription = find(mMetadataListeners, listener);
+			if(subscription != null && (mDeliveredMask & EventInterest.METADATA) != 0) {
+				notifyMetadataChanged(subscription, snapshot.getArtist(), snapshot.getTitle(), snapshot.getAlbum(), snapshot.getAlbumArtist(), snapshot.getDuration());
+			}
+			break;
+		case REPLAY_ARTWORK:
+			subscription = find(mArtworkListeners, listener);
+			if(subscription != null && (mDeliveredMask & EventInterest.ARTWORK) != 0) {
+				notifyArtworkChanged(subscription, mCurrentArtwork);
+			}
+			break;
+		case REPLAY_ARTWORK_HANDLE:
+			subscription = find(mArtworkHandleListeners, listener);
+			if(subscription != null && (mDeliveredMask & EventInterest.ARTWORK) != 0) {
+				notifyArtworkHandleChanged(subscription, mCurrentArtwork);
+			}
+			break;
+		case REPLAY_PLAYBACK_STATE:
+			subscription = find(mPlaybackStateListeners, listener);
+			if(subscription != null && (mDeliveredMask & EventInterest.PLAYBACK_STATE) != 0) {
+				notifyPlaybackStateChanged(subscription, snapshot.getPlayState());
+			}
+			break;
+		case REPLAY_FEATURES:
+			subscription = find(mFeaturesListeners, listener);
+			if(subscription != null && (mDeliveredMask & EventInterest.FEATURES) != 0) {
+				notifyFeaturesChanged(subscription, snapshot.getFeatures());
+			}
+			break;
+		case REPLAY_TRACK_CHANGE:
+			subscription = find(mTrackChangeListeners, listener);
+			if(subscription != null && (mDeliveredMask & EventInterest.METADATA) != 0) {
+				notifyTrackChanged(subscription, snapshot.getArtist(), snapshot.getTitle(), snapshot.getAlbum(), snapshot.getAlbumArtist(), snapshot.getDuration(),
+						mCurrentArtwork, snapshot.getPlayState());
+			}
+			break;
+		}
+	}
+
+	private static void notifyMetadataChanged(Subscription[] subscriptions, final String artist, final String title, final String album, final String albumArtist, final long duration) {
+		for(int i = 0; i < subscriptions.length; i++) {
+			final OnMetadataChangeListener l = (OnMetadataChangeListener) subscriptions[i].listener;
+			Executor executor = subscriptions[i].executor;
+			if(executor == null) {
+				l.onMetadataChanged(artist, title, album, albumArtist, duration);
+			} else {
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						l.onMetadataChanged(artist, title, album, albumArtist, duration);
+					}
+				});
+			}
+		}
+	}
+
+	private static void notifyArtworkChanged(Subscription[] subscriptions, ArtworkHandle artwork) {
+		for(int i = 0; i < subscriptions.length; i++) {
+			final OnArtworkChangeListener l = (OnArtworkChangeListener) subscriptions[i].listener;
+			Executor executor = subscriptions[i].executor;
+			if(executor == null) {
+				l.onArtworkChanged(artwork != null ? artwork.getBitmap() : null);
+			} else {
+				// current artwork may be replaced before executor runs
+				final ArtworkHandle held = artwork != null ? artwork.acquire() : null;
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							l.onArtworkChanged(held != null ? held.getBitmap() : null);
+						} finally {
+							if(held != null) held.release();
+						}
+					}
+				});
+			}
+		}
+	}
+
+	private static void notifyArtworkHandleChanged(Subscription[] subscriptions, ArtworkHandle artwork) {
+		for(int i = 0; i < subscriptions.length; i++) {
+			final OnArtworkHandleChangeListener l = (OnArtworkHandleChangeListener) subscriptions[i].listener;
+			Executor executor = subscriptions[i].executor;
+			if(executor == null) {
+				l.onArtworkChanged(artwork);
+			} else {
+				final ArtworkHandle held = artwork != null ? artwork.acquire() : null;
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							l.onArtworkChanged(held);
+						} finally {
+							if(held != null) held.release();
+						}
+					}
+				});
+			}
+		}
+	}
+
+	private static void notifyPlaybackStateChanged(Subscription[] subscriptions, final PlayState state) {
+		for(int i = 0; i < subscriptions.length; i++) {
+			final OnPlaybackStateChangeListener l = (OnPlaybackStateChangeListener) subscriptions[i].listener;
+			Executor executor = subscriptions[i].executor;
+			if(executor == null) {
+				l.onPlaybackStateChanged(state);
+			} else {
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						l.onPlaybackStateChanged(state);
+					}
+				});
+			}
+		}
+	}
+
+	private static void notifyFeaturesChanged(Subscription[] subscriptions, final List<RemoteControlFeature> features) {
+		for(int i = 0; i < subscriptions.length; i++) {
+			final OnRemoteControlFeaturesChangeListener l = (OnRemoteControlFeaturesChangeListener) subscriptions[i].listener;
+			Executor executor = subscriptions[i].executor;
+			if(executor == null) {
+				l.onFeaturesChanged(features);
+			} else {
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						l.onFeaturesChanged(features);
+					}
+				});
+			}
+		}
+	}
+
+	private static void notifyTrackChanged(Subscription[] subscriptions, final String artist, final String title, final String album, final String albumArtist, final long duration,
+			ArtworkHandle artwork, final PlayState state) {
+		for(int i = 0; i < subscriptions.length; i++) {
+			final OnTrackChangeListener l = (OnTrackChangeListener) subscriptions[i].listener;
+			Executor executor = subscriptions[i].executor;
+			if(executor == null) {
+				l.onTrackChanged(artist, title, album, albumArtist, duration, artwork, state);
+			} else {
+				final ArtworkHandle held = artwork != null ? artwork.acquire() : null;
+				executor.execute(new Runnable() {
+					@Override
+					public void run() {
+						try {
+							l.onTrackChanged(artist, title, album, albumArtist, duration, held, state);
+						} finally {
+							if(held != null) held.release();
+						}
+					}
+				});
+			}
+		}
+	}
+
+	private void updateEventInterest() {
+		mEventInterest.set(EventInterest.METADATA, hasMetadataListeners());
+		mEventInterest.set(EventInterest.ARTWORK, hasArtworkListeners());
+		mEventInterest.set(EventInterest.PLAYBACK_STATE, hasPlaybackStateListeners());
+		mEventInterest.set(EventInterest.FEATURES, hasFeaturesListeners());
+	}
+
+	/*
+	 * Adding listener which is already registered replaces its executor.
+	 */
+	private static Subscription[] add(Subscription[] subscriptions, Object listener, Executor executor) {
+		if(listener == null) return subscriptions;
+		for(int i = 0; i < subscriptions.length; i++) {
+			if(subscriptions[i].listener == listener) {
+				Subscription[] result = subscriptions.clone();
+				result[i] = new Subscription(listener, executor);
+				return result;
+			}
+		}
+		Subscription[] result = new Subscription[subscriptions.length + 1];
+		System.arraycopy(subscriptions, 0, result, 0, subscriptions.length);
+		result[subscriptions.length] = new Subscription(listener, executor);
+		return result;
+	}
+
+	private static Subscription[] remove(Subscription[] subscriptions, Object listener) {
+		if(listener == null) return subscriptions;
+		for(int i = 0; i < subscriptions.length; i++) {
+			if(subscriptions[i].listener == listener) {
+				if(subscriptions.length == 1) return EMPTY;
+				Subscription[] result = new Subscription[subscriptions.length - 1];
+				System.arraycopy(subscriptions, 0, result, 0, i);
+				System.arraycopy(subscriptions, i + 1, result, i, subscriptions.length - i - 1);
+				return result;
+			}
+		}
+		return subscriptions;
+	}
+
+	/*
+	 * Returns one element array with subscription of listener, or null if
+	 * it isn't registered anymore.
+	 */
+	private static Subscription[] find(Subscription[] subscriptions, Object listener) {
+		for(int i = 0; i < subscriptions.length; i++) {
+			if(subscriptions[i].listener == listener) return new Subscription[] { subscriptions[i] };
+		}
+		return null;
+	}
+
+	private static final class Subscription {
+
+		final Object listener;
+		/*
+		 * Null if listener is called directly on dispatching thread.
+		 */
+		final Executor executor;
+
+		Subscription(Object listener, Executor executor) {
+			this.listener = listener;
+			this.executor = executor;
+		}
+	}
+}
@@ -0,0 +1,47 @@
+/*******************************************************************************
+ * Copyright 2014 Alexander Leontyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.woodblockwithoutco.remotecontroller.impl;
+
+import java.util.concurrent.Executor;
+
+import android.os.Handler;
+import android.os.Looper;
+
+/**
+ * Executor which posts tasks to main thread in order they were submitted.
+ * Shouldn't be used explicitly by user.
+ */
+public final class MainThreadExecutor implements Executor {
+
+	private static MainThreadExecutor sInstance;
+
+	private final Handler mHandler = new Handler(Looper.getMainLooper());
+
+	private MainThreadExecutor() {
+	}
+
+	public static synchronized MainThreadExecutor getInstance() {
+		if(sInstance == null) {
+			sInstance = new MainThreadExecutor();
+		}
+		return sInstance;
+	}
+
+	@Override
+	public void execute(Runnable command) {
+		mHandler.post(command);
+	}
+}
@@ -0,0 +1,141 @@
+/*******************************************************************************
+ * Copyright 2014 Alexander Leontyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.woodblockwithoutco.remotecontroller.impl;
+
+import java.util.HashMap;
+import java.util.List;
+
+import com.woodblockwithoutco.remotecontroller.MediaCommand;
+
+import android.content.ComponentName;
+import android.content.Context;
+import android.content.Intent;
+import android.content.pm.ActivityInfo;
+import android.content.pm.ResolveInfo;
+import android.os.SystemClock;
+
+/**
+ * Sends media buttons straight to receiver of the most recently active
+ * player, instead of an ordered broadcast which is passed through every media
+ * button receiver on device. Receivers are looked up once per package and
+ * forgotten when package is changed or removed. One instance is shared by the
+ * whole process. Shouldn't be used explicitly by user.
+ */
+public final class MediaButtonResolver {
+
+	private static MediaButtonResolver sInstance;
+
+	/*
+	 * Marks packages which have no media button receiver in manifest.
+	 */
+	private static final Receiver NO_RECEIVER = new Receiver(null);
+
+	private final Context mContext;
+	private final HashMap<String, Receiver> mReceivers = new HashMap<String, Receiver>();
+	private volatile String mActivePackage;
+
+	private final PackageChangeMonitor.Listener mPackageListener = new PackageChangeMonitor.Listener() {
+		@Override
+		public void onPackageChanged(String packageName) {
+			synchronized(MediaButtonResolver.this) {
+				if(packageName != null) {
+					mReceivers.remove(packageName);
+				} else {
+					mReceivers.clear();
+				}
+			}
+		}
+	};
+
+	public static synchronized MediaButtonResolver getInstance(Context context) {
+		if(sInstance == null) {
+			sInstance = new MediaButtonResolver(context.getApplicationContext());
+		}
+		return sInstance;
+	}
+
+	private MediaButtonResolver(Context context) {
+		mContext = context;
+		PackageChangeMonitor.getInstance(mContext).addListener(mPackageListener);
+	}
+
+	/**
+	 * Remembers package of player which became active. It's kept after
+	 * player is gone, so buttons can still start it.
+	 */
+	public void setActivePackage(String packageName) {
+		if(packageName != null) mActivePackage = packageName;
+	}
+
+	/**
+	 * Sends down and up events of command to media button receiver of the
+	 * most recently active player.
+	 * 
+	 * @return False if there's no such receiver, then ordered broadcast must
+	 *         be used instead.
+	 */
+	public boolean send(MediaCommand command) {
+		String packageName = mActivePackage;
+		if(packageName == null) return false;
+		Receiver receiver = getReceiver(packageName);
+		if(receiver == NO_RECEIVER) return false;
+		long now = SystemClock.uptimeMillis();
+		mContext.sendBroadcast(MediaCommandEncoder.createDownIntent(receiver.template, command, now));
+		mContext.sendBroadcast(MediaCommandEncoder.createUpIntent(receiver.template, command, now));
+		return true;
+	}
+
+	private synchronized Receiver getReceiver(String packageName) {
+		Receiver receiver = mReceivers.get(packageName);
+		if(receiver == null) {
+			receiver = resolve(packageName);
+			mReceivers.put(packageName, receiver);
+		}
+		return receiver;
+	}
+
+	/*
+	 * Only receivers declared in manifest of player's own package can be
+	 * found, players which register theirs at runtime are reached by ordered
+	 * broadcast.
+	 */
+	private Receiver resolve(String packageName) {
+		Intent intent = new Intent(Intent.ACTION_MEDIA_BUTTON);
+		intent.setPackage(packageName);
+		List<ResolveInfo> infos = mContext.getPackageManager().queryBroadcastReceivers(intent, 0);
+		if(infos == null) return NO_RECEIVER;
+		for(int i = 0; i < infos.size(); i++) {
+			ActivityInfo info = infos.get(i).activityInfo;
+			if(info != null && packageName.equals(info.packageName)) {
+				return new Receiver(new ComponentName(info.packageName, info.name));
+			}
+		}
+		return NO_RECEIVER;
+	}
+
+	/*
+	 * Explicit intent template, it is copied for each send and never
+	 * modified.
+	 */
+	private static final class Receiver {
+
+		final Intent template;
+
+		Receiver(ComponentName component) {
+			template = new Intent(Intent.ACTION_MEDIA_BUTTON).setComponent(component);
+		}
+	}
+}
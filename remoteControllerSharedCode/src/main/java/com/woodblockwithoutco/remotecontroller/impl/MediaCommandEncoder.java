@@ -0,0 +1,90 @@
+/*******************************************************************************
+ * Copyright 2014 Alexander Leontyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.woodblockwithoutco.remotecontroller.impl;
+
+import com.woodblockwithoutco.remotecontroller.MediaCommand;
+
+import android.content.Intent;
+import android.view.KeyEvent;
+
+/**
+ * Key codes of media commands and ACTION_MEDIA_BUTTON intent template. Each
+ * send gets its own key events stamped with current uptime, as players tell
+ * double clicks apart by event time, and its own copy of the template, as
+ * intents may be sent from several threads at once. Templates are never sent
+ * or modified. Shouldn't be used explicitly by user.
+ * <p>
+ * Sending a command therefore still allocates two key events and two intents.
+ * Reusable events aren't possible: KeyEvent has no public way to change its
+ * times, and a pair with stale times makes players see repeated presses as
+ * double clicks. Only key code lookup and the intent template are shared.
+ */
+public final class MediaCommandEncoder {
+
+	private static final int[] KEY_CODES = new int[MediaCommand.values().length];
+	private static final Intent MEDIA_BUTTON_TEMPLATE = new Intent(Intent.ACTION_MEDIA_BUTTON);
+
+	static {
+		KEY_CODES[MediaCommand.NEXT.ordinal()] = KeyEvent.KEYCODE_MEDIA_NEXT;
+		KEY_CODES[MediaCommand.PREVIOUS.ordinal()] = KeyEvent.KEYCODE_MEDIA_PREVIOUS;
+		KEY_CODES[MediaCommand.PLAY.ordinal()] = KeyEvent.KEYCODE_MEDIA_PLAY;
+		KEY_CODES[MediaCommand.PAUSE.ordinal()] = KeyEvent.KEYCODE_MEDIA_PAUSE;
+		KEY_CODES[MediaCommand.PLAY_PAUSE.ordinal()] = KeyEvent.KEYCODE_MEDIA_PLAY_PAUSE;
+		KEY_CODES[MediaCommand.REWIND.ordinal()] = KeyEvent.KEYCODE_MEDIA_REWIND;
+		KEY_CODES[MediaCommand.FAST_FORWARD.ordinal()] = KeyEvent.KEYCODE_MEDIA_FAST_FORWARD;
+		KEY_CODES[MediaCommand.STOP.ordinal()] = KeyEvent.KEYCODE_MEDIA_STOP;
+	}
+
+	private MediaCommandEncoder() {
+	}
+
+	public static int getKeyCode(MediaCommand command) {
+		return KEY_CODES[command.ordinal()];
+	}
+
+	/**
+	 * @param uptimeMs
+	 *            Time of key press in {@link android.os.SystemClock#uptimeMillis()}
+	 *            base, the same for down and up event of one press.
+	 */
+	public static KeyEvent createDownEvent(MediaCommand command, long uptimeMs) {
+		return new KeyEvent(uptimeMs, uptimeMs, KeyEvent.ACTION_DOWN, KEY_CODES[command.ordinal()], 0);
+	}
+
+	public static KeyEvent createUpEvent(MediaCommand command, long uptimeMs) {
+		return new KeyEvent(uptimeMs, uptimeMs, KeyEvent.ACTION_UP, KEY_CODES[command.ordinal()], 0);
+	}
+
+	public static Intent createDownIntent(MediaCommand command, long uptimeMs) {
+		return createDownIntent(MEDIA_BUTTON_TEMPLATE, command, uptimeMs);
+	}
+
+	public static Intent createUpIntent(MediaCommand command, long uptimeMs) {
+		return createUpIntent(MEDIA_BUTTON_TEMPLATE, command, uptimeMs);
+	}
+
+	/**
+	 * @param template
+	 *            ACTION_MEDIA_BUTTON intent which is copied, it isn't modified.
+	 */
+	public static Intent createDownIntent(Intent template, MediaCommand command, long uptimeMs) {
+		return new Intent(template).putExtra(Intent.EXTRA_KEY_EVENT, createDownEvent(command, uptimeMs));
+	}
+
+	public static Intent createUpIntent(Intent template, MediaCommand command, long uptimeMs) {
+		return new Intent(template).putExtra(Intent.EXTRA_KEY_EVENT, createUpEvent(command, uptimeMs));
+	}
+}
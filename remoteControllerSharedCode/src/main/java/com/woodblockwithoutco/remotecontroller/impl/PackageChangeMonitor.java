@@ -0,0 +1,85 @@
+/*******************************************************************************
+ * Copyright 2014 Alexander Leontyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.woodblockwithoutco.remotecontroller.impl;
+
+import android.content.BroadcastReceiver;
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.Uri;
+
+/**
+ * Single receiver of package changes for per-package caches of the process,
+ * so only one is registered however many caches there are. Shouldn't be used
+ * explicitly by user.
+ */
+public final class PackageChangeMonitor {
+
+	public interface Listener {
+
+		/**
+		 * Called on main thread when package is added, changed, replaced or
+		 * removed.
+		 * 
+		 * @param packageName
+		 *            Changed package, or null if any package may have
+		 *            changed.
+		 */
+		public void onPackageChanged(String packageName);
+	}
+
+	private static PackageChangeMonitor sInstance;
+
+	// copy-on-write, so receiver never needs a lock
+	private volatile Listener[] mListeners = new Listener[0];
+
+	private final BroadcastReceiver mPackageReceiver = new BroadcastReceiver() {
+		@Override
+		public void onReceive(Context context, Intent intent) {
+			Uri data = intent.getData();
+			String packageName = data != null ? data.getSchemeSpecificPart() : null;
+			Listener[] listeners = mListeners;
+			for(int i = 0; i < listeners.length; i++) {
+				listeners[i].onPackageChanged(packageName);
+			}
+		}
+	};
+
+	public static synchronized PackageChangeMonitor getInstance(Context context) {
+		if(sInstance == null) {
+			sInstance = new PackageChangeMonitor(context.getApplicationContext());
+		}
+		return sInstance;
+	}
+
+	private PackageChangeMonitor(Context context) {
+		IntentFilter filter = new IntentFilter();
+		filter.addAction(Intent.ACTION_PACKAGE_ADDED);
+		filter.addAction(Intent.ACTION_PACKAGE_CHANGED);
+		filter.addAction(Intent.ACTION_PACKAGE_REPLACED);
+		filter.addAction(Intent.ACTION_PACKAGE_REMOVED);
+		filter.addDataScheme("package");
+		context.registerReceiver(mPackageReceiver, filter);
+	}
+
+	public synchronized void addListener(Listener l) {
+		Listener[] listeners = mListeners;
+		Listener[] result = new Listener[listeners.length + 1];
+		System.arraycopy(listeners, 0, result, 0, listeners.length);
+		result[listeners.length] = l;
+		mListeners = result;
+	}
+}
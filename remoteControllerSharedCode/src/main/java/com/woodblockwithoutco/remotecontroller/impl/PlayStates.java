@@ -0,0 +1,66 @@
+/*******************************************************************************
+ * Copyright 2014 Alexander Leontyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.woodblockwithoutco.remotecontroller.impl;
+
+import com.woodblockwithoutco.remotecontroller.PlayState;
+
+import android.media.RemoteControlClient;
+
+/**
+ * Maps RemoteControlClient play states to PlayState. Shouldn't be used
+ * explicitly by user.
+ */
+public final class PlayStates {
+
+	private PlayStates() {
+	}
+
+	/**
+	 * @return PlayState matching RemoteControlClient play state or null if
+	 *         state is unknown.
+	 */
+	public static PlayState fromClientState(int state) {
+		switch (state) {
+		case RemoteControlClient.PLAYSTATE_BUFFERING:
+			return PlayState.BUFFERING;
+		case RemoteControlClient.PLAYSTATE_ERROR:
+			return PlayState.ERROR;
+		case RemoteControlClient.PLAYSTATE_FAST_FORWARDING:
+			return PlayState.FAST_FORWARDING;
+		case RemoteControlClient.PLAYSTATE_PAUSED:
+			return PlayState.PAUSED;
+		case RemoteControlClient.PLAYSTATE_PLAYING:
+			return PlayState.PLAYING;
+		case RemoteControlClient.PLAYSTATE_REWINDING:
+			return PlayState.REWINDING;
+		case RemoteControlClient.PLAYSTATE_SKIPPING_BACKWARDS:
+			return PlayState.SKIPPING_BACKWARDS;
+		case RemoteControlClient.PLAYSTATE_SKIPPING_FORWARDS:
+			return PlayState.SKIPPING_FORWARDS;
+		case RemoteControlClient.PLAYSTATE_STOPPED:
+			return PlayState.STOPPED;
+		default:
+			return null;
+		}
+	}
+
+	/**
+	 * @return True if playback position advances in given state.
+	 */
+	public static boolean isMoving(PlayState state) {
+		return state == PlayState.PLAYING || state == PlayState.FAST_FORWARDING || state == PlayState.REWINDING;
+	}
+}
@@ -0,0 +1,111 @@
+/*******************************************************************************
+ * Copyright 2014 Alexander Leontyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.woodblockwithoutco.remotecontroller.impl;
+
+import android.os.SystemClock;
+
+/**
+ * Keeps the last playback position reported by client and extrapolates
+ * current position from it. Reading never blocks and never allocates, so
+ * {@link #getPosition()} can be called from any thread as often as needed.
+ * Updates are expected to come from a single thread. Shouldn't be used
+ * explicitly by user.
+ */
+public final class PositionClock {
+
+	public static final long POSITION_UNKNOWN = -1;
+
+	/**
+	 * Immutable (state, position, time, speed) tuple. Times are in
+	 * {@link SystemClock#elapsedRealtime()} base, as sent by
+	 * RemoteControlClient.
+	 */
+	public static final class Sample {
+		public final int state;
+		public final long positionMs;
+		public final long timestampMs;
+		public final float speed;
+
+		public Sample(int state, long positionMs, long timestampMs, float speed) {
+			this.state = state;
+			this.positionMs = positionMs < 0 ? POSITION_UNKNOWN : positionMs;
+			this.timestampMs = timestampMs;
+			this.speed = speed;
+		}
+
+		/**
+		 * @return Estimated position at given time or
+		 *         {@link PositionClock#POSITION_UNKNOWN}.
+		 */
+		public long getPosition(long nowMs) {
+			return extrapolate(positionMs, timestampMs, speed, PlayStates.isMoving(PlayStates.fromClientState(state)), nowMs);
+		}
+	}
+
+	private volatile Sample mSample;
+
+	/**
+	 * Publishes new sample. If sample has no position, it's estimated from the
+	 * previous one, so clients that only report state changes keep counting.
+	 */
+	public void set(Sample sample) {
+		Sample previous = mSample;
+		if(sample.positionMs == POSITION_UNKNOWN && previous != null && previous.positionMs != POSITION_UNKNOWN) {
+			sample = new Sample(sample.state, previous.getPosition(sample.timestampMs), sample.timestampMs, sample.speed);
+		}
+		mSample = sample;
+	}
+
+	public void update(int state, long stateChangeTimeMs, long positionMs, float speed) {
+		set(new Sample(state, positionMs, stateChangeTimeMs, speed));
+	}
+
+	public void reset() {
+		mSample = null;
+	}
+
+	/**
+	 * @return Last published sample, may be null.
+	 */
+	public Sample getSample() {
+		return mSample;
+	}
+
+	/**
+	 * @return Current estimated position in milliseconds or
+	 *         {@link #POSITION_UNKNOWN}.
+	 */
+	public long getPosition() {
+		Sample sample = mSample;
+		if(sample == null) return POSITION_UNKNOWN;
+		return sample.getPosition(SystemClock.elapsedRealtime());
+	}
+
+	/**
+	 * Estimates position at given time from a known one. Shared by samples
+	 * and {@link com.woodblockwithoutco.remotecontroller.PlaybackSnapshot}.
+	 * 
+	 * @param moving
+	 *            True if position advances in current play state.
+	 * @return Estimated position or {@link #POSITION_UNKNOWN}.
+	 */
+	public static long extrapolate(long positionMs, long timestampMs, float speed, boolean moving, long nowMs) {
+		if(positionMs == POSITION_UNKNOWN) return POSITION_UNKNOWN;
+		if(!moving || nowMs <= timestampMs) return positionMs;
+		long position = positionMs + (long) ((nowMs - timestampMs) * speed);
+		return position < 0 ? 0 : position;
+	}
+}
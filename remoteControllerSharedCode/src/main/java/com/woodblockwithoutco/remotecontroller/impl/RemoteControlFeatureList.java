@@ -0,0 +1,69 @@
+/*******************************************************************************
+ * Copyright 2014 Alexander Leontyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.woodblockwithoutco.remotecontroller.impl;
+
+import java.util.AbstractList;
+import java.util.RandomAccess;
+
+import com.woodblockwithoutco.remotecontroller.RemoteControlFeature;
+
+/**
+ * Immutable list of features backed by a bitmask of feature ordinals. Instances
+ * are shared between events, so they can be kept by listeners as long as
+ * needed. Shouldn't be created explicitly by user, see
+ * {@link TransportControlFlags#decode(int, int)}.
+ */
+public final class RemoteControlFeatureList extends AbstractList<RemoteControlFeature> implements RandomAccess {
+
+	private static final RemoteControlFeature[] FEATURES = RemoteControlFeature.values();
+
+	private final int mMask;
+	private final RemoteControlFeature[] mFeatures;
+
+	RemoteControlFeatureList(int mask) {
+		mMask = mask;
+		mFeatures = new RemoteControlFeature[Integer.bitCount(mask)];
+		int index = 0;
+		for(int i = 0; i < FEATURES.length; i++) {
+			if((mask & (1 << i)) != 0) {
+				mFeatures[index++] = FEATURES[i];
+			}
+		}
+	}
+
+	/**
+	 * @return Bitmask where bit N is set if feature with ordinal N is used.
+	 */
+	public int getMask() {
+		return mMask;
+	}
+
+	@Override
+	public RemoteControlFeature get(int location) {
+		return mFeatures[location];
+	}
+
+	@Override
+	public int size() {
+		return mFeatures.length;
+	}
+
+	@Override
+	public boolean contains(Object object) {
+		if(!(object instanceof RemoteControlFeature)) return false;
+		return (mMask & (1 << ((RemoteControlFeature) object).ordinal())) != 0;
+	}
+}
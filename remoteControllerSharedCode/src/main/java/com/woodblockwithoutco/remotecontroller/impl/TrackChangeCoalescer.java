@@ -0,0 +1,113 @@
+/*******************************************************************************
+ * Copyright 2014 Alexander Leontyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.woodblockwithoutco.remotecontroller.impl;
+
+import android.os.Handler;
+
+import com.woodblockwithoutco.remotecontroller.ArtworkHandle;
+import com.woodblockwithoutco.remotecontroller.PlayState;
+
+/**
+ * Merges metadata, artwork and playback state updates which arrive within a
+ * window into a single track change of {@link ListenerRegistry}. Window is
+ * opened by metadata or artwork, playback state is only merged into it. Must
+ * be used from dispatching thread of registry, which has a looper.
+ */
+final class TrackChangeCoalescer implements Runnable {
+
+	public static final int DEFAULT_WINDOW_MS = 50;
+
+	private final ListenerRegistry mListenerRegistry;
+	private volatile int mWindowMs = DEFAULT_WINDOW_MS;
+	// created on first update if not set, so it runs on dispatching thread
+	private Handler mHandler;
+	private boolean mPending;
+
+	private String mArtist;
+	private String mTitle;
+	private String mAlbum;
+	private String mAlbumArtist;
+	private long mDuration = -1;
+	private ArtworkHandle mArtwork;
+	private PlayState mState;
+
+	TrackChangeCoalescer(ListenerRegistry listenerRegistry) {
+		mListenerRegistry = listenerRegistry;
+	}
+
+	/**
+	 * @param windowMs
+	 *            0 merges only updates which are already queued on
+	 *            dispatching thread.
+	 */
+	public void setWindow(int windowMs) {
+		mWindowMs = windowMs < 0 ? 0 : windowMs;
+	}
+
+	public void setHandler(Handler handler) {
+		mHandler = handler;
+	}
+
+	public void onMetadataChanged(String artist, String title, String album, String albumArtist, long duration) {
+		mArtist = artist;
+		mTitle = title;
+		mAlbum = album;
+		mAlbumArtist = albumArtist;
+		mDuration = duration;
+		schedule();
+	}
+
+	public void onArtworkChanged(ArtworkHandle artwork) {
+		ArtworkHandle previous = mArtwork;
+		mArtwork = artwork != null ? artwork.acquire() : null;
+		if(previous != null) previous.release();
+		schedule();
+	}
+
+	public void onPlaybackStateChanged(PlayState state) {
+		mState = state;
+	}
+
+	/**
+	 * Drops pending track change and everything known about previous client.
+	 */
+	public void reset() {
+		if(mPending) {
+			mHandler.removeCallbacks(this);
+			mPending = false;
+		}
+		mArtist = mTitle = mAlbum = mAlbumArtist = null;
+		mDuration = -1;
+		mState = null;
+		if(mArtwork != null) {
+			mArtwork.release();
+			mArtwork = null;
+		}
+	}
+
+	private void schedule() {
+		if(mPending) return;
+		if(mHandler == null) mHandler = new Handler();
+		mPending = true;
+		mHandler.postDelayed(this, mWindowMs);
+	}
+
+	@Override
+	public void run() {
+		mPending = false;
+		mListenerRegistry.dispatchTrackChanged(mArtist, mTitle, mAlbum, mAlbumArtist, mDuration, mArtwork, mState);
+	}
+}
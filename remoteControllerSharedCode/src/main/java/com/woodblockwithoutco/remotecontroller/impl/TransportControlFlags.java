@@ -0,0 +1,103 @@
+/*******************************************************************************
+ * Copyright 2014 Alexander Leontyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.woodblockwithoutco.remotecontroller.impl;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.woodblockwithoutco.remotecontroller.RemoteControlFeature;
+
+import android.media.RemoteControlClient;
+
+/**
+ * Decodes RemoteControlClient transport control flags into feature lists.
+ * There is only one list per distinct combination of features, so decoding
+ * doesn't allocate once the combination has been seen. Shouldn't be used
+ * explicitly by user.
+ */
+public final class TransportControlFlags {
+
+	/*
+	 * Hidden RemoteControlClient.MEDIA_POSITION_READABLE and
+	 * RemoteControlClient.MEDIA_POSITION_WRITABLE, sent to displays on API 18
+	 * separately from transport control flags.
+	 */
+	public static final int MEDIA_POSITION_READABLE = 1 << 0;
+	public static final int MEDIA_POSITION_WRITABLE = 1 << 1;
+
+	private static final int[] KEY_FLAGS = {
+		RemoteControlClient.FLAG_KEY_MEDIA_FAST_FORWARD,
+		RemoteControlClient.FLAG_KEY_MEDIA_NEXT,
+		RemoteControlClient.FLAG_KEY_MEDIA_PAUSE,
+		RemoteControlClient.FLAG_KEY_MEDIA_PLAY,
+		RemoteControlClient.FLAG_KEY_MEDIA_PLAY_PAUSE,
+		RemoteControlClient.FLAG_KEY_MEDIA_PREVIOUS,
+		RemoteControlClient.FLAG_KEY_MEDIA_REWIND,
+		RemoteControlClient.FLAG_KEY_MEDIA_STOP,
+		RemoteControlClient.FLAG_KEY_MEDIA_POSITION_UPDATE
+	};
+
+	private static final RemoteControlFeature[] KEY_FEATURES = {
+		RemoteControlFeature.USES_FAST_FORWARD,
+		RemoteControlFeature.USES_NEXT,
+		RemoteControlFeature.USES_PAUSE,
+		RemoteControlFeature.USES_PLAY,
+		RemoteControlFeature.USES_PLAY_PAUSE,
+		RemoteControlFeature.USES_PREVIOUS,
+		RemoteControlFeature.USES_REWIND,
+		RemoteControlFeature.USES_STOP,
+		RemoteControlFeature.USES_SCRUBBING
+	};
+
+	private static final AtomicReferenceArray<RemoteControlFeatureList> sCache =
+			new AtomicReferenceArray<RemoteControlFeatureList>(1 << RemoteControlFeature.values().length);
+
+	private TransportControlFlags() {
+	}
+
+	/**
+	 * @param flags
+	 *            Transport control flags as sent by RemoteControlClient.
+	 * @return Immutable shared list of features.
+	 */
+	public static RemoteControlFeatureList decode(int flags) {
+		return decode(flags, 0);
+	}
+
+	/**
+	 * @param flags
+	 *            Transport control flags as sent by RemoteControlClient.
+	 * @param posCapabilities
+	 *            Positional capabilities as sent to displays on API 18, 0 if
+	 *            unknown.
+	 * @return Immutable shared list of features.
+	 */
+	public static RemoteControlFeatureList decode(int flags, int posCapabilities) {
+		int mask = 0;
+		for(int i = 0; i < KEY_FLAGS.length; i++) {
+			if((flags & KEY_FLAGS[i]) != 0) mask |= 1 << KEY_FEATURES[i].ordinal();
+		}
+		if((posCapabilities & MEDIA_POSITION_READABLE) != 0) mask |= 1 << RemoteControlFeature.USES_POSITION.ordinal();
+		if((posCapabilities & MEDIA_POSITION_WRITABLE) != 0) mask |= 1 << RemoteControlFeature.USES_SCRUBBING.ordinal();
+
+		RemoteControlFeatureList result = sCache.get(mask);
+		if(result == null) {
+			// losing the race only costs an extra instance, both are equal
+			sCache.compareAndSet(mask, null, new RemoteControlFeatureList(mask));
+			result = sCache.get(mask);
+		}
+		return result;
+	}
+}
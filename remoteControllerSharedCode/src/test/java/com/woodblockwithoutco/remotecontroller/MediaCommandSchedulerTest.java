@@ -0,0 +1,137 @@
+/*******************************************************************************
+ * Copyright 2014 Alexander Leontyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.woodblockwithoutco.remotecontroller;
+
+import static org.junit.Assert.assertEquals;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import android.os.Looper;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 18)
+public class MediaCommandSchedulerTest {
+
+	private final List<MediaCommand> mSent = new ArrayList<MediaCommand>();
+	private MediaCommandScheduler mScheduler;
+
+	@Before
+	public void setUp() {
+		RemoteControlDisplay display = (RemoteControlDisplay) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { RemoteControlDisplay.class }, new InvocationHandler() {
+			@Override
+			public Object invoke(Object proxy, Method method, Object[] args) {
+				if(method.getName().equals("sendMediaCommand")) {
+					mSent.add((MediaCommand) args[0]);
+					return true;
+				}
+				return null;
+			}
+		});
+		mScheduler = new MediaCommandScheduler(display, Looper.getMainLooper(), 100, 150);
+	}
+
+	@Test
+	public void commandsAreSentInOrder() {
+		mScheduler.send(MediaCommand.NEXT);
+		mScheduler.send(MediaCommand.NEXT);
+		mScheduler.send(MediaCommand.PREVIOUS);
+		assertEquals(3, mScheduler.getQueueDepth());
+
+		ShadowLooper.idleMainLooper(1000);
+		assertEquals(Arrays.asList(MediaCommand.NEXT, MediaCommand.NEXT, MediaCommand.PREVIOUS), mSent);
+		assertEquals(3, mScheduler.getSentCommandCount());
+	}
+
+	@Test
+	public void commandsWaitForWindowAndInterval() {
+		mScheduler.send(MediaCommand.NEXT);
+		mScheduler.send(MediaCommand.PREVIOUS);
+
+		ShadowLooper.idleMainLooper(99);
+		assertEquals(0, mSent.size());
+		ShadowLooper.idleMainLooper(1);
+		assertEquals(Arrays.asList(MediaCommand.NEXT), mSent);
+		ShadowLooper.idleMainLooper(149);
+		assertEquals(1, mSent.size());
+		ShadowLooper.idleMainLooper(1);
+		assertEquals(2, mSent.size());
+	}
+
+	@Test
+	public void togglesCancelEachOther() {
+		mScheduler.send(MediaCommand.PLAY_PAUSE);
+		mScheduler.send(MediaCommand.PLAY_PAUSE);
+
+		assertEquals(0, mScheduler.getQueueDepth());
+		assertEquals(2, mScheduler.getCoalescedCommandCount());
+		ShadowLooper.idleMainLooper(1000);
+		assertEquals(0, mSent.size());
+	}
+
+	@Test
+	public void playReplacesAdjacentPlayStateCommands() {
+		mScheduler.send(MediaCommand.PAUSE);
+		mScheduler.send(MediaCommand.PLAY_PAUSE);
+		mScheduler.send(MediaCommand.PLAY);
+
+		ShadowLooper.idleMainLooper(1000);
+		assertEquals(Arrays.asList(MediaCommand.PLAY), mSent);
+		assertEquals(2, mScheduler.getCoalescedCommandCount());
+	}
+
+	@Test
+	public void playStateCommandsAreNotMovedAcrossTrackCommands() {
+		mScheduler.send(MediaCommand.PAUSE);
+		mScheduler.send(MediaCommand.NEXT);
+		mScheduler.send(MediaCommand.PLAY_PAUSE);
+		mScheduler.send(MediaCommand.PLAY);
+
+		ShadowLooper.idleMainLooper(1000);
+		assertEquals(Arrays.asList(MediaCommand.PAUSE, MediaCommand.NEXT, MediaCommand.PLAY), mSent);
+	}
+
+	@Test
+	public void stopDropsPendingCommands() {
+		mScheduler.send(MediaCommand.NEXT);
+		mScheduler.send(MediaCommand.PLAY);
+		mScheduler.send(MediaCommand.STOP);
+
+		ShadowLooper.idleMainLooper(1000);
+		assertEquals(Arrays.asList(MediaCommand.STOP), mSent);
+		assertEquals(2, mScheduler.getCoalescedCommandCount());
+	}
+
+	@Test
+	public void clearDropsPendingCommands() {
+		mScheduler.send(MediaCommand.NEXT);
+		mScheduler.clear();
+
+		ShadowLooper.idleMainLooper(1000);
+		assertEquals(0, mSent.size());
+	}
+}
@@ -0,0 +1,74 @@
+/*******************************************************************************
+ * Copyright 2014 Alexander Leontyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.woodblockwithoutco.remotecontroller.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import com.woodblockwithoutco.remotecontroller.RemoteControllerStatistics;
+
+public class ArtworkChangeDetectorTest {
+
+	private RemoteControllerStatistics mStatistics;
+	private ArtworkChangeDetector mDetector;
+
+	@Before
+	public void setUp() {
+		mStatistics = new RemoteControllerStatistics();
+		mDetector = new ArtworkChangeDetector(mStatistics);
+	}
+
+	@Test
+	public void firstArtworkIsChanged() {
+		assertTrue(mDetector.isChanged(0, Artwork.create(null, 42, false)));
+		assertEquals(1, mStatistics.getDeliveredArtworkCount());
+	}
+
+	@Test
+	public void sameFingerprintIsSuppressed() {
+		mDetector.isChanged(0, Artwork.create(null, 42, false));
+
+		assertFalse(mDetector.isChanged(0, Artwork.create(null, 42, false)));
+		assertEquals(1, mStatistics.getSuppressedArtworkCount());
+		assertTrue(mDetector.isChanged(0, Artwork.create(null, 43, false)));
+	}
+
+	@Test
+	public void newGenerationIsAlwaysChanged() {
+		mDetector.isChanged(0, Artwork.create(null, 42, false));
+
+		assertTrue(mDetector.isChanged(1, Artwork.create(null, 42, false)));
+	}
+
+	@Test
+	public void markDeliveredIsRemembered() {
+		mDetector.markDelivered(0, Artwork.create(null, 42, false));
+
+		assertFalse(mDetector.isChanged(0, Artwork.create(null, 42, false)));
+	}
+
+	@Test
+	public void resetForgetsArtwork() {
+		mDetector.isChanged(0, Artwork.create(null, 42, false));
+		mDetector.reset();
+
+		assertTrue(mDetector.isChanged(0, Artwork.create(null, 42, false)));
+	}
+}
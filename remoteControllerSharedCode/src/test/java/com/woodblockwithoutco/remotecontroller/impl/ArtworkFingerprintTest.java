@@ -0,0 +1,56 @@
+/*******************************************************************************
+ * Copyright 2014 Alexander Leontyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.woodblockwithoutco.remotecontroller.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import android.graphics.Bitmap;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 18)
+public class ArtworkFingerprintTest {
+
+	@Test
+	public void missingArtworkHasNoFingerprint() {
+		assertEquals(ArtworkFingerprint.NO_ARTWORK, ArtworkFingerprint.compute(null));
+		Bitmap recycled = Bitmap.createBitmap(4, 4, Bitmap.Config.ARGB_8888);
+		recycled.recycle();
+		assertEquals(ArtworkFingerprint.NO_ARTWORK, ArtworkFingerprint.compute(recycled));
+	}
+
+	@Test
+	public void equalBitmapsHaveEqualFingerprints() {
+		Bitmap first = Bitmap.createBitmap(32, 32, Bitmap.Config.ARGB_8888);
+		Bitmap second = Bitmap.createBitmap(32, 32, Bitmap.Config.ARGB_8888);
+
+		assertEquals(ArtworkFingerprint.compute(first), ArtworkFingerprint.compute(second));
+		assertNotEquals(ArtworkFingerprint.NO_ARTWORK, ArtworkFingerprint.compute(first));
+	}
+
+	@Test
+	public void dimensionsAndConfigChangeFingerprint() {
+		long square = ArtworkFingerprint.compute(Bitmap.createBitmap(32, 32, Bitmap.Config.ARGB_8888));
+
+		assertNotEquals(square, ArtworkFingerprint.compute(Bitmap.createBitmap(32, 16, Bitmap.Config.ARGB_8888)));
+		assertNotEquals(square, ArtworkFingerprint.compute(Bitmap.createBitmap(32, 32, Bitmap.Config.RGB_565)));
+	}
+}
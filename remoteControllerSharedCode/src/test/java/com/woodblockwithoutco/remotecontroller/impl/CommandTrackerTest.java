@@ -0,0 +1,144 @@
+/*******************************************************************************
+ * Copyright 2014 Alexander Leontyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.woodblockwithoutco.remotecontroller.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.Robolectric;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLooper;
+
+import android.os.Handler;
+import android.os.Looper;
+
+import com.woodblockwithoutco.remotecontroller.CommandFuture;
+import com.woodblockwithoutco.remotecontroller.MediaCommand;
+import com.woodblockwithoutco.remotecontroller.PlayState;
+import com.woodblockwithoutco.remotecontroller.PlaybackSnapshot;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 18)
+public class CommandTrackerTest {
+
+	private static final PlaybackSnapshot PLAYING = PlaybackSnapshot.EMPTY.withPlayState(PlayState.PLAYING);
+	private static final PlaybackSnapshot PAUSED = PlaybackSnapshot.EMPTY.withPlayState(PlayState.PAUSED);
+	private static final PlaybackSnapshot FIRST_TRACK = PLAYING.withMetadata("Artist", "First", "Album", null, 1000);
+	private static final PlaybackSnapshot SECOND_TRACK = PLAYING.withMetadata("Artist", "Second", "Album", null, 2000);
+
+	private CommandTracker mTracker;
+
+	@Before
+	public void setUp() {
+		mTracker = new CommandTracker();
+		mTracker.setHandler(new Handler(Looper.getMainLooper()));
+	}
+
+	@Test
+	public void trackCommandsExpectMetadata() {
+		assertEquals(EventInterest.METADATA, CommandTracker.getAcknowledgingEvent(MediaCommand.NEXT));
+		assertEquals(EventInterest.METADATA, CommandTracker.getAcknowledgingEvent(MediaCommand.PREVIOUS));
+		assertEquals(EventInterest.PLAYBACK_STATE, CommandTracker.getAcknowledgingEvent(MediaCommand.PAUSE));
+	}
+
+	@Test
+	public void commandIsAcknowledgedWhenValueChanges() {
+		CommandFuture future = add(MediaCommand.PAUSE, PLAYING);
+		assertTrue(mTracker.isPending(EventInterest.PLAYBACK_STATE));
+
+		assertTrue(mTracker.onEvent(EventInterest.PLAYBACK_STATE, PAUSED));
+		assertTrue(future.isDone());
+		assertFalse(mTracker.isPending(EventInterest.PLAYBACK_STATE));
+	}
+
+	@Test
+	public void commandIsNotAcknowledgedBySameValue() {
+		CommandFuture future = add(MediaCommand.PAUSE, PLAYING);
+
+		assertFalse(mTracker.onEvent(EventInterest.PLAYBACK_STATE, PLAYING));
+		assertFalse(future.isDone());
+	}
+
+	@Test
+	public void commandIsNotAcknowledgedByOtherEventType() {
+		CommandFuture future = add(MediaCommand.NEXT, FIRST_TRACK);
+
+		mTracker.onEvent(EventInterest.PLAYBACK_STATE, FIRST_TRACK.withPlayState(PlayState.BUFFERING));
+		assertFalse(future.isDone());
+		mTracker.onEvent(EventInterest.METADATA, SECOND_TRACK);
+		assertTrue(future.isDone());
+	}
+
+	@Test
+	public void unknownValueIsAcknowledgedByAnyEvent() {
+		CommandFuture future = add(MediaCommand.PLAY, null);
+
+		mTracker.onEvent(EventInterest.PLAYBACK_STATE, PLAYING);
+		assertTrue(future.isDone());
+	}
+
+	@Test
+	public void metadataChangeIsDetected() {
+		assertFalse(CommandTracker.isChanged(EventInterest.METADATA, FIRST_TRACK, FIRST_TRACK.withPlayState(PlayState.PAUSED)));
+		assertTrue(CommandTracker.isChanged(EventInterest.METADATA, FIRST_TRACK, SECOND_TRACK));
+		assertTrue(CommandTracker.isChanged(EventInterest.METADATA, FIRST_TRACK, PLAYING.withMetadata("Artist", "First", "Album", null, 1001)));
+		assertTrue(CommandTracker.isChanged(EventInterest.METADATA, FIRST_TRACK, PLAYING.withMetadata(null, "First", "Album", null, 1000)));
+	}
+
+	@Test
+	public void commandTimesOut() throws Exception {
+		CommandFuture future = add(MediaCommand.PAUSE, PLAYING);
+
+		ShadowLooper.idleMainLooper(1000);
+		assertTrue(future.isDone());
+		assertFalse(future.get());
+	}
+
+	@Test
+	public void acknowledgedCommandDoesNotTimeOut() throws Exception {
+		CommandFuture future = add(MediaCommand.PAUSE, PLAYING);
+		mTracker.onEvent(EventInterest.PLAYBACK_STATE, PAUSED);
+
+		assertEquals(0, Robolectric.getForegroundThreadScheduler().size());
+		assertTrue(future.get());
+	}
+
+	@Test
+	public void removedCommandIsNotPending() {
+		CommandFuture future = add(MediaCommand.PAUSE, PLAYING);
+
+		assertTrue(mTracker.remove(future));
+		assertFalse(mTracker.isPending(EventInterest.PLAYBACK_STATE));
+		assertEquals(0, Robolectric.getForegroundThreadScheduler().size());
+	}
+
+	private CommandFuture add(MediaCommand command, PlaybackSnapshot sentWith) {
+		final CommandFuture future = new CommandFuture(command);
+		mTracker.add(future, sentWith, new Runnable() {
+			@Override
+			public void run() {
+				future.complete(false);
+				mTracker.remove(future);
+			}
+		}, 1000);
+		return future;
+	}
+}
@@ -0,0 +1,149 @@
+/*******************************************************************************
+ * Copyright 2014 Alexander Leontyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.woodblockwithoutco.remotecontroller.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.annotation.Config;
+
+import android.graphics.Bitmap;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
+
+import com.woodblockwithoutco.remotecontroller.RemoteControllerStatistics;
+
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE, sdk = 18)
+public class ConflatingQueueTest {
+
+	private static final int FIRST_WHAT = 10;
+	private static final int EVENT_COUNT = 3;
+
+	private RemoteControllerStatistics mStatistics;
+	private ConflatingQueue mQueue;
+	private CountingHandler mHandler;
+
+	@Before
+	public void setUp() {
+		mStatistics = new RemoteControllerStatistics();
+		mQueue = new ConflatingQueue(FIRST_WHAT, EVENT_COUNT, mStatistics);
+		mHandler = new CountingHandler();
+	}
+
+	@Test
+	public void newerEventReplacesPendingOne() {
+		mQueue.offer(mHandler, FIRST_WHAT, 0, 1, "first");
+		mQueue.offer(mHandler, FIRST_WHAT, 0, 2, "second");
+
+		assertEquals(1, mHandler.sent);
+		assertEquals(1, mStatistics.getConflatedEventCount());
+		ConflatingQueue.Event event = mQueue.take(FIRST_WHAT, 0);
+		assertEquals(2, event.arg);
+		assertEquals("second", event.obj);
+		assertNull(mQueue.take(FIRST_WHAT, 0));
+	}
+
+	@Test
+	public void eventTypesHaveSeparateSlots() {
+		mQueue.offer(mHandler, FIRST_WHAT, 0, 1, null);
+		mQueue.offer(mHandler, FIRST_WHAT + 2, 0, 3, null);
+
+		assertEquals(2, mHandler.sent);
+		assertEquals(0, mStatistics.getConflatedEventCount());
+		assertEquals(1, mQueue.take(FIRST_WHAT, 0).arg);
+		assertEquals(3, mQueue.take(FIRST_WHAT + 2, 0).arg);
+	}
+
+	@Test
+	public void newGenerationDropsPendingEvents() {
+		mQueue.offer(mHandler, FIRST_WHAT, 0, 1, null);
+		mQueue.offer(mHandler, FIRST_WHAT + 1, 0, 2, null);
+		mQueue.setGenerationId(1);
+
+		assertEquals(2, mStatistics.getDroppedStaleEventCount());
+		assertNull(mQueue.take(FIRST_WHAT, 0));
+		assertNull(mQueue.take(FIRST_WHAT + 1, 0));
+	}
+
+	@Test
+	public void isCurrentCountsStaleGenerations() {
+		mQueue.setGenerationId(2);
+
+		assertTrue(mQueue.isCurrent(2));
+		assertFalse(mQueue.isCurrent(1));
+		assertEquals(1, mStatistics.getDroppedStaleEventCount());
+	}
+
+	@Test
+	public void eventOfNewClientWaitsForHandler() {
+		mQueue.setGenerationId(1);
+		mQueue.offer(mHandler, FIRST_WHAT, 1, 5, null);
+
+		// handler hasn't seen generation 1 yet, event is kept for it
+		assertNull(mQueue.take(FIRST_WHAT, 0));
+		ConflatingQueue.Event event = mQueue.take(FIRST_WHAT, 1);
+		assertEquals(5, event.arg);
+		assertEquals(0, mStatistics.getDroppedStaleEventCount());
+	}
+
+	@Test
+	public void eventOfOldClientIsDroppedOnTake() {
+		mQueue.offer(mHandler, FIRST_WHAT, 0, 1, null);
+		ConflatingQueue.Event stale = mQueue.take(FIRST_WHAT, 0);
+		assertEquals(1, stale.arg);
+
+		mQueue.offer(mHandler, FIRST_WHAT, 3, 2, null);
+		assertNull(mQueue.take(FIRST_WHAT, 0));
+		assertEquals(1, mStatistics.getDroppedStaleEventCount());
+		assertNull(mQueue.take(FIRST_WHAT, 3));
+	}
+
+	@Test
+	public void replacedArtworkIsReleased() {
+		Artwork first = Artwork.create(Bitmap.createBitmap(4, 4, Bitmap.Config.ARGB_8888), 1, true);
+		mQueue.offer(mHandler, FIRST_WHAT, 0, 0, first);
+		Artwork second = Artwork.create(Bitmap.createBitmap(4, 4, Bitmap.Config.ARGB_8888), 2, true);
+		mQueue.offer(mHandler, FIRST_WHAT, 0, 0, second);
+
+		assertTrue(first.handle.isReleased());
+		assertSame(second, mQueue.take(FIRST_WHAT, 0).obj);
+		assertFalse(second.handle.isReleased());
+	}
+
+	private static final class CountingHandler extends Handler {
+
+		int sent;
+
+		CountingHandler() {
+			super(Looper.getMainLooper());
+		}
+
+		@Override
+		public boolean sendMessageAtTime(Message msg, long uptimeMillis) {
+			sent++;
+			return true;
+		}
+	}
+}
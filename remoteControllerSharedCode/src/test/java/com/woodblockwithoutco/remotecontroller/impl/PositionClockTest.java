@@ -0,0 +1,86 @@
+/*******************************************************************************
+ * Copyright 2014 Alexander Leontyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.woodblockwithoutco.remotecontroller.impl;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import org.junit.Test;
+
+import android.media.RemoteControlClient;
+
+public class PositionClockTest {
+
+	@Test
+	public void positionAdvancesWhilePlaying() {
+		PositionClock.Sample sample = new PositionClock.Sample(RemoteControlClient.PLAYSTATE_PLAYING, 1000, 5000, 1.0f);
+
+		assertEquals(1000, sample.getPosition(5000));
+		assertEquals(3000, sample.getPosition(7000));
+	}
+
+	@Test
+	public void positionFollowsSpeed() {
+		PositionClock.Sample sample = new PositionClock.Sample(RemoteControlClient.PLAYSTATE_PLAYING, 1000, 5000, 2.0f);
+
+		assertEquals(5000, sample.getPosition(7000));
+	}
+
+	@Test
+	public void positionStaysWhilePaused() {
+		PositionClock.Sample sample = new PositionClock.Sample(RemoteControlClient.PLAYSTATE_PAUSED, 1000, 5000, 1.0f);
+
+		assertEquals(1000, sample.getPosition(9000));
+	}
+
+	@Test
+	public void rewindingStopsAtZero() {
+		assertEquals(0, PositionClock.extrapolate(1000, 5000, -2.0f, true, 9000));
+	}
+
+	@Test
+	public void positionBeforeTimestampIsNotExtrapolated() {
+		assertEquals(1000, PositionClock.extrapolate(1000, 5000, 1.0f, true, 4000));
+	}
+
+	@Test
+	public void unknownPositionStaysUnknown() {
+		PositionClock.Sample sample = new PositionClock.Sample(RemoteControlClient.PLAYSTATE_PLAYING, -5, 5000, 1.0f);
+
+		assertEquals(PositionClock.POSITION_UNKNOWN, sample.positionMs);
+		assertEquals(PositionClock.POSITION_UNKNOWN, sample.getPosition(9000));
+	}
+
+	@Test
+	public void sampleWithoutPositionContinuesPreviousOne() {
+		PositionClock clock = new PositionClock();
+		clock.update(RemoteControlClient.PLAYSTATE_PLAYING, 5000, 1000, 1.0f);
+		clock.update(RemoteControlClient.PLAYSTATE_PAUSED, 8000, PositionClock.POSITION_UNKNOWN, 1.0f);
+
+		assertEquals(4000, clock.getSample().positionMs);
+		assertEquals(4000, clock.getSample().getPosition(20000));
+	}
+
+	@Test
+	public void resetForgetsSample() {
+		PositionClock clock = new PositionClock();
+		clock.update(RemoteControlClient.PLAYSTATE_PLAYING, 5000, 1000, 1.0f);
+		clock.reset();
+
+		assertNull(clock.getSample());
+		assertEquals(PositionClock.POSITION_UNKNOWN, clock.getPosition());
+	}
+}
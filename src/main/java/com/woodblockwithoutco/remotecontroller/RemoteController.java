@@ -15,6 +15,7 @@
  *******************************************************************************/
 package com.woodblockwithoutco.remotecontroller;
 
+import java.util.concurrent.Executor;
 
 import com.woodblockwithoutco.remotecontroller.impl.RemoteControlDisplayImplV14;
 import com.woodblockwithoutco.remotecontroller.impl.RemoteControlDisplayImplV18;
@@ -24,96 +25,273 @@ import android.app.PendingIntent;
 import android.content.Context;
 import android.content.Intent;
 import android.content.pm.ApplicationInfo;
+import android.graphics.Bitmap;
 import android.os.Build;
 import android.os.Bundle;
+import android.os.Looper;
 
 public class RemoteController implements RemoteControlDisplay {
 
-	private RemoteControlDisplay mImpl;
+	private final Context mContext;
+	private final boolean mProcessInBackground;
+	private final Looper mLooper;
+	private volatile RemoteControlDisplay mImpl;
 	
 	public RemoteController(Context context) {
+		this(context, false);
+	}
+
+	/**
+	 * Implementation for current API level, together with its threads and
+	 * hidden framework members, is created on first registration, listener
+	 * change or command, so constructing RemoteController is cheap. Client
+	 * events are still processed on the thread which constructed it, or on
+	 * main thread if that thread has no looper, and listeners without
+	 * executor are called directly on that thread. On API 19 and higher
+	 * events come from notification listener service and listeners without
+	 * executor are always called on main thread.
+	 * 
+	 * @param processInBackground
+	 *            If true, events of client are filtered, decoded and prepared
+	 *            on a background thread owned by library, and only listeners
+	 *            are called on their executors, or on main thread if they
+	 *            don't have one. On API 19 and higher events are always
+	 *            prepared by notification listener service, so this option
+	 *            has no effect there.
+	 */
+	public RemoteController(Context context, boolean processInBackground) {
+		if(Build.VERSION.SDK_INT < Build.VERSION_CODES.ICE_CREAM_SANDWICH) throw new UnsupportedOperationException("Android API level must be >= 14!");
+		mContext = context;
+		mProcessInBackground = processInBackground;
+		Looper looper = Looper.myLooper();
+		mLooper = looper != null ? looper : Looper.getMainLooper();
+	}
+
+	private RemoteControlDisplay getImpl() {
+		RemoteControlDisplay impl = mImpl;
+		if(impl == null) {
+			synchronized(this) {
+				impl = mImpl;
+				if(impl == null) {
+					impl = createImpl();
+					mImpl = impl;
+				}
+			}
+		}
+		return impl;
+	}
+
+	private RemoteControlDisplay createImpl() {
 		if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) {
-			mImpl = new RemoteControlDisplayImplV19(context);
+			return new RemoteControlDisplayImplV19(mContext);
 		} else if(Build.VERSION.SDK_INT == Build.VERSION_CODES.JELLY_BEAN_MR2) {
-			mImpl = new RemoteControlDisplayImplV18(context);
-		} else if(Build.VERSION.SDK_INT >= Build.VERSION_CODES.ICE_CREAM_SANDWICH) {
-			mImpl = new RemoteControlDisplayImplV14(context);
+			return new RemoteControlDisplayImplV18(mContext, mProcessInBackground, mLooper);
+		} else {
+			return new RemoteControlDisplayImplV14(mContext, mProcessInBackground, mLooper);
 		}
-		
-		if(mImpl == null) throw new UnsupportedOperationException("Android API level must be >= 14!");
 	}
 	
 	
 	public boolean registerRemoteControls() {
-		return mImpl.registerRemoteControls();
+		return getImpl().registerRemoteControls();
 	}
 	
 	public boolean registerRemoteControls(int width, int height) {
-		return mImpl.registerRemoteControls(width, height);
+		return getImpl().registerRemoteControls(width, height);
+	}
+	
+	public boolean registerRemoteControlsWithoutArtwork() {
+		return getImpl().registerRemoteControlsWithoutArtwork();
 	}
 	
 	public void unregisterRemoteControls() {
-		mImpl.unregisterRemoteControls();
+		RemoteControlDisplay impl = mImpl;
+		if(impl == null) return;
+		impl.unregisterRemoteControls();
 	}
 	
 	public void unregisterAndDestroyRemoteControls() {
-		mImpl.unregisterAndDestroyRemoteControls();
+		RemoteControlDisplay impl = mImpl;
+		if(impl == null) return;
+		impl.unregisterAndDestroyRemoteControls();
 	}
 	
 	public Intent getCurrentClientIntent() {
-		return mImpl.getCurrentClientIntent();
+		RemoteControlDisplay impl = mImpl;
+		if(impl == null) return null;
+		return impl.getCurrentClientIntent();
 	}
 	
 	public boolean isClientActive() {
-		return mImpl.isClientActive();
+		RemoteControlDisplay impl = mImpl;
+		if(impl == null) return false;
+		return impl.isClientActive();
 	}
 	
 	public void sendBroadcastMediaCommand(MediaCommand command) {
-		mImpl.sendBroadcastMediaCommand(command);
+		getImpl().sendBroadcastMediaCommand(command);
 	}
 	
 	public boolean sendMediaCommand(MediaCommand command) {
-		return mImpl.sendMediaCommand(command);
+		return getImpl().sendMediaCommand(command);
 	}
 	
 	public long getPosition() {
-		return mImpl.getPosition();
+		RemoteControlDisplay impl = mImpl;
+		if(impl == null) return PlaybackSnapshot.POSITION_UNKNOWN;
+		return impl.getPosition();
 	}
 	
 	public boolean seekTo(long position) {
-		return mImpl.seekTo(position);
+		return getImpl().seekTo(position);
 	}
 	
 	public void setArtworkChangeListener(OnArtworkChangeListener l) {
-		mImpl.setArtworkChangeListener(l);
+		getImpl().setArtworkChangeListener(l);
+	}
+	
+	public void setArtworkHandleChangeListener(OnArtworkHandleChangeListener l) {
+		getImpl().setArtworkHandleChangeListener(l);
 	}
+	
 	public void setMetadataChangeListener(OnMetadataChangeListener l) {
-		mImpl.setMetadataChangeListener(l);
+		getImpl().setMetadataChangeListener(l);
 	}
 	
 	public void setPlaybackStateChangeListener(OnPlaybackStateChangeListener l) {
-		mImpl.setPlaybackStateChangeListener(l);
+		getImpl().setPlaybackStateChangeListener(l);
 	}
 	
 	public void setRemoteControlFeaturesChangeListener(OnRemoteControlFeaturesChangeListener l) {
-		mImpl.setRemoteControlFeaturesChangeListener(l);
+		getImpl().setRemoteControlFeaturesChangeListener(l);
+	}
+	
+	public void addArtworkChangeListener(OnArtworkChangeListener l, Executor executor) {
+		getImpl().addArtworkChangeListener(l, executor);
+	}
+	
+	public void removeArtworkChangeListener(OnArtworkChangeListener l) {
+		RemoteControlDisplay impl = mImpl;
+		if(impl == null) return;
+		impl.removeArtworkChangeListener(l);
+	}
+	
+	public void addArtworkHandleChangeListener(OnArtworkHandleChangeListener l, Executor executor) {
+		getImpl().addArtworkHandleChangeListener(l, executor);
+	}
+	
+	public void removeArtworkHandleChangeListener(OnArtworkHandleChangeListener l) {
+		RemoteControlDisplay impl = mImpl;
+		if(impl == null) return;
+		impl.removeArtworkHandleChangeListener(l);
+	}
+	
+	public void addMetadataChangeListener(OnMetadataChangeListener l, Executor executor) {
+		getImpl().addMetadataChangeListener(l, executor);
+	}
+	
+	public void removeMetadataChangeListener(OnMetadataChangeListener l) {
+		RemoteControlDisplay impl = mImpl;
+		if(impl == null) return;
+		impl.removeMetadataChangeListener(l);
+	}
+	
+	public void addPlaybackStateChangeListener(OnPlaybackStateChangeListener l, Executor executor) {
+		getImpl().addPlaybackStateChangeListener(l, executor);
+	}
+	
+	public void removePlaybackStateChangeListener(OnPlaybackStateChangeListener l) {
+		RemoteControlDisplay impl = mImpl;
+		if(impl == null) return;
+		impl.removePlaybackStateChangeListener(l);
+	}
+	
+	public void addRemoteControlFeaturesChangeListener(OnRemoteControlFeaturesChangeListener l, Executor executor) {
+		getImpl().addRemoteControlFeaturesChangeListener(l, executor);
+	}
+	
+	public void removeRemoteControlFeaturesChangeListener(OnRemoteControlFeaturesChangeListener l) {
+		RemoteControlDisplay impl = mImpl;
+		if(impl == null) return;
+		impl.removeRemoteControlFeaturesChangeListener(l);
+	}
+	
+	public void setTrackChangeListener(OnTrackChangeListener l) {
+		getImpl().setTrackChangeListener(l);
+	}
+	
+	public void addTrackChangeListener(OnTrackChangeListener l, Executor executor) {
+		getImpl().addTrackChangeListener(l, executor);
+	}
+	
+	public void removeTrackChangeListener(OnTrackChangeListener l) {
+		RemoteControlDisplay impl = mImpl;
+		if(impl == null) return;
+		impl.removeTrackChangeListener(l);
+	}
+	
+	public void setTrackChangeWindow(int windowMs) {
+		getImpl().setTrackChangeWindow(windowMs);
 	}
 	
 	public boolean isRegistered() {
-		return mImpl.isRegistered();
+		RemoteControlDisplay impl = mImpl;
+		if(impl == null) return false;
+		return impl.isRegistered();
 	}
 	
 	public boolean setSynchronizationEnabled(boolean enabled) {
-		return mImpl.setSynchronizationEnabled(enabled);
+		return getImpl().setSynchronizationEnabled(enabled);
 	}
 
 	@Override
 	public boolean pingService() {
-		return mImpl.pingService();
+		return getImpl().pingService();
 	}
 
 	@Override
 	public void sendBroadcastMediaCommand(MediaCommand command, PendingIntent intent) {
-		mImpl.sendBroadcastMediaCommand(command, intent);
+		getImpl().sendBroadcastMediaCommand(command, intent);
+	}
+
+	@Override
+	public void setArtworkCacheSize(int maxBytes) {
+		getImpl().setArtworkCacheSize(maxBytes);
+	}
+
+	@Override
+	public void setArtworkBitmapConfig(Bitmap.Config config) {
+		getImpl().setArtworkBitmapConfig(config);
+	}
+
+	@Override
+	public RemoteControllerStatistics getStatistics() {
+		return getImpl().getStatistics();
+	}
+
+	/**
+	 * Creates implementation if it doesn't exist yet, as the first call must
+	 * make display receive all events. Snapshot still stays empty until
+	 * remote controls are registered.
+	 */
+	@Override
+	public PlaybackSnapshot getSnapshot() {
+		return getImpl().getSnapshot();
+	}
+
+	@Override
+	public CommandFuture sendMediaCommandAsync(MediaCommand command, long timeoutMs) {
+		return getImpl().sendMediaCommandAsync(command, timeoutMs);
+	}
+
+	/**
+	 * Before the first registration, listener change or command, returns a
+	 * new future which is already completed with false on each call.
+	 */
+	@Override
+	public RegistrationFuture getRegistrationFuture() {
+		RemoteControlDisplay impl = mImpl;
+		if(impl == null) return new RegistrationFuture(false);
+		return impl.getRegistrationFuture();
 	}
 }
@@ -0,0 +1,108 @@
+/*******************************************************************************
+ * Copyright 2014 Alexander Leontyev
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ *******************************************************************************/
+package com.woodblockwithoutco.remotecontroller;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assume.assumeTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.robolectric.RobolectricTestRunner;
+import org.robolectric.RuntimeEnvironment;
+import org.robolectric.annotation.Config;
+import org.robolectric.shadows.ShadowLog;
+
+import android.content.Context;
+import android.util.Log;
+
+import com.woodblockwithoutco.remotecontroller.impl.HiddenApi;
+
+/**
+ * Startup cost of {@link RemoteController} for each API level path: creating
+ * the facade, and the first registration which builds the implementation and
+ * resolves hidden framework members. Each path runs in its own Robolectric
+ * sandbox, so its first registration is cold. Results are logged, only lazy
+ * construction is asserted. Skipped unless tests are run with
+ * {@code -Pbenchmark}.
+ */
+@RunWith(RobolectricTestRunner.class)
+@Config(manifest = Config.NONE)
+public class RemoteControllerStartupBenchmark {
+
+	private static final String TAG = "RemoteControllerStartupBenchmark";
+	private static final int ITERATIONS = 200;
+
+	@Before
+	public void setUp() {
+		assumeTrue(Boolean.getBoolean("remotecontroller.benchmark"));
+		ShadowLog.stream = System.out;
+	}
+
+	@Test
+	@Config(sdk = 16)
+	public void startupV14() {
+		measure("API 16 (V14)");
+	}
+
+	@Test
+	@Config(sdk = 18)
+	public void startupV18() {
+		measure("API 18 (V18)");
+	}
+
+	@Test
+	@Config(sdk = 19)
+	public void startupV19() {
+		measure("API 19 (V19)");
+	}
+
+	private void measure(String path) {
+		Context context = RuntimeEnvironment.application;
+
+		int lookups = getHiddenApiLookupCount();
+		long start = System.nanoTime();
+		RemoteController controller = new RemoteController(context);
+		long coldConstruction = System.nanoTime() - start;
+		assertEquals("construction must not resolve hidden members", lookups, getHiddenApiLookupCount());
+
+		start = System.nanoTime();
+		controller.registerRemoteControls();
+		long coldRegistration = System.nanoTime() - start;
+		controller.unregisterAndDestroyRemoteControls();
+
+		long construction = 0;
+		long registration = 0;
+		for(int i = 0; i < ITERATIONS; i++) {
+			start = System.nanoTime();
+			controller = new RemoteController(context);
+			construction += System.nanoTime() - start;
+
+			start = System.nanoTime();
+			controller.registerRemoteControls();
+			registration += System.nanoTime() - start;
+			controller.unregisterAndDestroyRemoteControls();
+		}
+
+		Log.i(TAG, String.format("%s: construction %d us cold, %d us warm; first registration %d us cold, %d us warm; hidden lookups %d us",
+				path, coldConstruction / 1000, construction / ITERATIONS / 1000, coldRegistration / 1000, registration / ITERATIONS / 1000,
+				HiddenApi.getResolutionTimeNanos() / 1000));
+	}
+
+	private static int getHiddenApiLookupCount() {
+		return HiddenApi.getResolvedCount() + HiddenApi.getFailedCount();
+	}
+}